@@ -0,0 +1,156 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event;
+
+import com.google.common.collect.ImmutableMap;
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.lifecycle.DefaultEventLifecycle;
+import com.xiaomai.event.partition.PartitionRoute;
+import com.xiaomai.event.utils.PartitionRouteUtil;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.core.DestinationResolver;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * The benchmark of {@link EventAgent#triggerEvent}, the messages are sent to a no-op channel,
+ * so the result is the producer overhead of scs-event excluding the binder.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar EventAgentBenchmark -prof gc} to report the
+ * allocation rate along with the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventAgentBenchmark {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final MessageChannel noopChannel = (message, timeout) -> true;
+
+    private final DestinationResolver<MessageChannel> resolver = name -> noopChannel;
+
+    private EventAgent<BenchmarkEvents.OrderCreated> orderAgent;
+
+    private EventAgent<BenchmarkEvents.StockChanged> stockAgent;
+
+    private EventAgent<BenchmarkEvents.Heartbeat> heartbeatAgent;
+
+    private BenchmarkEvents.OrderCreated order;
+
+    private BenchmarkEvents.StockChanged stock;
+
+    private BenchmarkEvents.Heartbeat heartbeat;
+
+    private Map<String, Object> eventAttrs;
+
+    private PartitionRoute route;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DefaultEventLifecycle lifecycle = new DefaultEventLifecycle();
+        orderAgent = new EventAgent<>(BenchmarkEvents.OrderCreated.class, null, "bench", lifecycle, resolver);
+        stockAgent = new EventAgent<>(BenchmarkEvents.StockChanged.class, null, "bench", lifecycle, resolver);
+        heartbeatAgent = new EventAgent<>(BenchmarkEvents.Heartbeat.class, null, "bench", lifecycle, resolver);
+        order = new BenchmarkEvents.OrderCreated("SO20200601000001", 10086L, 100);
+        stock = new BenchmarkEvents.StockChanged("HZ-01", 123456789L, 7, -1);
+        heartbeat = new BenchmarkEvents.Heartbeat(1L);
+        eventAttrs = ImmutableMap.of("tenant", "bench", "source", "jmh");
+        route = PartitionRouteUtil.composePartitionKey("bench__bench_order_created", order.hashCode());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        EventAgent.closeAll();
+    }
+
+    @Benchmark
+    public String triggerEventSingleKey() {
+        return orderAgent.triggerEvent(order);
+    }
+
+    @Benchmark
+    public String triggerEventCompositeKey() {
+        return stockAgent.triggerEvent(stock);
+    }
+
+    @Benchmark
+    public String triggerEventHashKey() {
+        return heartbeatAgent.triggerEvent(heartbeat);
+    }
+
+    @Benchmark
+    public String triggerEventWithAttrs() {
+        return orderAgent.triggerEvent(order, "bench-producer", eventAttrs, null);
+    }
+
+    @Benchmark
+    public String triggerEventExplicitKey() {
+        return orderAgent.triggerEvent(order, "SO20200601000001");
+    }
+
+    @Benchmark
+    public void buildEventHeaders(Blackhole bh) {
+        bh.consume(MessageBuilder.createMessage(order,
+            orderAgent.buildEventHeaders(order, eventSeq(), route, Collections.emptyMap())));
+    }
+
+    /**
+     * The header construction before the single sealed map, as the baseline of {@link #buildEventHeaders}
+     */
+    @Benchmark
+    public void buildEventHeadersCopied(Blackhole bh) {
+        Map<String, Object> eventHeaders = new HashMap<>();
+        eventHeaders.put(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq());
+        eventHeaders.put(EventBuiltinAttr.EVENT_KEY.getKey(), route.toWireForm());
+        eventHeaders.put(EventBuiltinAttr.EVENT_CLASS.getKey(), order.getClass().getName());
+        eventHeaders.put(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(), System.currentTimeMillis());
+        eventHeaders.put(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), "bench");
+        eventHeaders.putAll(Collections.emptyMap());
+        Message<BenchmarkEvents.OrderCreated> message =
+            MessageBuilder.createMessage(order, new MessageHeaders(eventHeaders));
+        bh.consume(message);
+    }
+
+    private String eventSeq() {
+        return Long.toString(sequence.incrementAndGet());
+    }
+}
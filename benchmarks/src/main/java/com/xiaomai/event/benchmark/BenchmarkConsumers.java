@@ -0,0 +1,112 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.benchmark;
+
+import com.xiaomai.event.config.EventBindingConfiguration;
+import com.xiaomai.event.config.adapter.EventHandlerMethodFactory;
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.lifecycle.IEventLifecycle;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.stream.converter.CompositeMessageConverterFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The consumer side fixtures shared by the benchmarks, the handler methods are created by the
+ * same factory and argument resolvers as the {@link EventBindingConfiguration}
+ */
+public final class BenchmarkConsumers {
+
+    public static final String CONSUMER_APP = "bench-app-7";
+
+    public static final String PRODUCER_APP = "bench-producer";
+
+    public static final String ORDER_JSON = "{\"orderNo\":\"SO20200601000001\",\"userId\":10086,\"amount\":100}";
+
+    private BenchmarkConsumers() {
+    }
+
+    /**
+     * Create the message converter registered to the bindings
+     * @return the composite message converter
+     */
+    public static CompositeMessageConverter messageConverter() {
+        return new CompositeMessageConverterFactory().getMessageConverterForAllRegistered();
+    }
+
+    /**
+     * Create the handler method factory as the event binding configuration does
+     * @param eventLifecycle the event lifecycle
+     * @return the initialized handler method factory
+     */
+    public static EventHandlerMethodFactory handlerMethodFactory(IEventLifecycle eventLifecycle) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        EventHandlerMethodFactory factory = (EventHandlerMethodFactory) EventBindingConfiguration
+            .messageHandlerMethodFactory(messageConverter(), null, beanFactory, eventLifecycle);
+        // the application name is injected by @Value in the application context
+        ReflectionUtils.setField(ReflectionUtils.findField(EventHandlerMethodFactory.class, "appName"),
+            factory, CONSUMER_APP);
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    /**
+     * Build the event message as received from the binder
+     * @param payload the event payload, either the object or the serialized json
+     * @param payloadClass the event payload class
+     * @param rawHeaders whether the event headers are left as bytes by the header mapper
+     * @param extraHeaders the extra headers of the message
+     * @return the event message
+     */
+    public static Message<?> eventMessage(Object payload, Class<?> payloadClass, boolean rawHeaders,
+        Map<String, Object> extraHeaders) {
+        MessageBuilder<?> builder = MessageBuilder.withPayload(payload)
+            .setHeader(EventBuiltinAttr.EVENT_ID.getKey(), header("5f0c7d8e-3b1a-4c2d-9e8f-0a1b2c3d4e5f", rawHeaders))
+            .setHeader(EventBuiltinAttr.EVENT_KEY.getKey(), header("bench__bench_order_created::SO20200601000001", rawHeaders))
+            .setHeader(EventBuiltinAttr.EVENT_CLASS.getKey(), header(payloadClass.getName(), rawHeaders))
+            .setHeader(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(), rawHeaders ?
+                String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8) : System.currentTimeMillis())
+            .setHeader(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), header(PRODUCER_APP, rawHeaders))
+            .copyHeaders(extraHeaders);
+        if (payload instanceof byte[]) {
+            builder.setHeader(MessageHeaders.CONTENT_TYPE, "application/json");
+        }
+        return builder.build();
+    }
+
+    private static Object header(String value, boolean raw) {
+        return raw ? value.getBytes(StandardCharsets.UTF_8) : value;
+    }
+
+    /**
+     * The listener of the benchmark events, the consumed payload is published to keep it alive
+     */
+    public static class OrderListener {
+
+        public volatile Object consumed;
+
+        public void onOrderCreated(BenchmarkEvents.OrderCreated event) {
+            this.consumed = event;
+        }
+    }
+}
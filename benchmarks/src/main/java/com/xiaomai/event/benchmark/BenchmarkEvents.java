@@ -0,0 +1,141 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.benchmark;
+
+import com.xiaomai.event.annotation.EventMeta;
+
+/**
+ * The event payloads shared by the benchmarks
+ */
+public final class BenchmarkEvents {
+
+    private BenchmarkEvents() {
+    }
+
+    /**
+     * The event partitioned by a single string field
+     */
+    @EventMeta(name = "bench_order_created", description = "benchmark order created", domain = "bench",
+        partitionOn = {"orderNo"})
+    public static class OrderCreated {
+
+        private String orderNo;
+
+        private long userId;
+
+        private int amount;
+
+        public OrderCreated() {
+        }
+
+        public OrderCreated(String orderNo, long userId, int amount) {
+            this.orderNo = orderNo;
+            this.userId = userId;
+            this.amount = amount;
+        }
+
+        public String getOrderNo() {
+            return orderNo;
+        }
+
+        public void setOrderNo(String orderNo) {
+            this.orderNo = orderNo;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(long userId) {
+            this.userId = userId;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        public void setAmount(int amount) {
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * The event partitioned by mixed string and primitive fields
+     */
+    @EventMeta(name = "bench_stock_changed", description = "benchmark stock changed", domain = "bench",
+        partitionOn = {"warehouse", "skuId", "batch"})
+    public static class StockChanged {
+
+        private String warehouse;
+
+        private long skuId;
+
+        private int batch;
+
+        private int delta;
+
+        public StockChanged(String warehouse, long skuId, int batch, int delta) {
+            this.warehouse = warehouse;
+            this.skuId = skuId;
+            this.batch = batch;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * The event partitioned by the payload hash code
+     */
+    @EventMeta(name = "bench_heartbeat", description = "benchmark heartbeat", domain = "bench")
+    public static class Heartbeat {
+
+        private long tick;
+
+        public Heartbeat(long tick) {
+            this.tick = tick;
+        }
+    }
+
+    /**
+     * The audited event dedicated to the whitelisted consumers
+     */
+    @EventMeta(name = "bench_order_paid", description = "benchmark order paid", domain = "bench",
+        enableAudit = true, consumerWhitelist = {"bench-app-0", "bench-app-1", "bench-app-2", "bench-app-3",
+        "bench-app-4", "bench-app-5", "bench-app-6", "bench-app-7"})
+    public static class OrderPaid {
+
+        private String orderNo;
+
+        public OrderPaid(String orderNo) {
+            this.orderNo = orderNo;
+        }
+    }
+
+    /**
+     * The audited event consumed by any consumer
+     */
+    @EventMeta(name = "bench_order_closed", description = "benchmark order closed", domain = "bench",
+        enableAudit = true)
+    public static class OrderClosed {
+
+        private String orderNo;
+
+        public OrderClosed(String orderNo) {
+            this.orderNo = orderNo;
+        }
+    }
+}
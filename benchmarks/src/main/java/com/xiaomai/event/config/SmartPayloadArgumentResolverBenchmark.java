@@ -0,0 +1,80 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.config;
+
+import com.xiaomai.event.benchmark.BenchmarkConsumers;
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.MethodParameter;
+import org.springframework.messaging.Message;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The benchmark of {@link SmartPayloadArgumentResolver}, with the payload delivered as the
+ * target object and as the json bytes converted by the binding message converter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmartPayloadArgumentResolverBenchmark {
+
+    private SmartPayloadArgumentResolver resolver;
+
+    private MethodParameter parameter;
+
+    private Message<?> objectMessage;
+
+    private Message<?> jsonMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resolver = new SmartPayloadArgumentResolver(BenchmarkConsumers.messageConverter(), null);
+        parameter = new MethodParameter(ReflectionUtils.findMethod(BenchmarkConsumers.OrderListener.class,
+            "onOrderCreated", BenchmarkEvents.OrderCreated.class), 0);
+        objectMessage = BenchmarkConsumers.eventMessage(new BenchmarkEvents.OrderCreated("SO20200601000001", 10086L, 100),
+            BenchmarkEvents.OrderCreated.class, false, Collections.emptyMap());
+        jsonMessage = BenchmarkConsumers.eventMessage(BenchmarkConsumers.ORDER_JSON.getBytes(StandardCharsets.UTF_8),
+            BenchmarkEvents.OrderCreated.class, false, Collections.emptyMap());
+    }
+
+    @Benchmark
+    public Object resolveWithoutConversion() throws Exception {
+        return resolver.resolveArgument(parameter, objectMessage);
+    }
+
+    @Benchmark
+    public Object resolveWithConversion() throws Exception {
+        return resolver.resolveArgument(parameter, jsonMessage);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.config.adapter;
+
+import com.google.common.collect.ImmutableMap;
+import com.xiaomai.event.benchmark.BenchmarkConsumers;
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import com.xiaomai.event.lifecycle.DefaultEventLifecycle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.messaging.Message;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The benchmark of {@link DispatchingEventHandlerMessageHandler} with the conditional handlers
+ * bound to one input, each handler matches one {@code eventType} header as the usual
+ * {@code @EventHandler(condition = "headers['eventType']=='...'")} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchingEventHandlerBenchmark {
+
+    // the same as EventHandlerAnnotationBeanPostProcessor
+    private static final SpelExpressionParser SPEL_EXPRESSION_PARSER = new SpelExpressionParser(
+        new SpelParserConfiguration(SpelCompilerMode.MIXED, DispatchingEventHandlerBenchmark.class.getClassLoader()));
+
+    @Param({"1", "5", "20"})
+    public int handlers;
+
+    private DispatchingEventHandlerMessageHandler dispatcher;
+
+    private Message<?> firstMatched;
+
+    private Message<?> lastMatched;
+
+    private Message<?> unmatched;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        EventHandlerMethodFactory factory = BenchmarkConsumers.handlerMethodFactory(new DefaultEventLifecycle());
+        Method method = ReflectionUtils.findMethod(BenchmarkConsumers.OrderListener.class, "onOrderCreated",
+            BenchmarkEvents.OrderCreated.class);
+
+        List<DispatchingEventHandlerMessageHandler.ConditionalStreamListenerMessageHandlerWrapper> wrappers =
+            new ArrayList<>(handlers);
+        for (int i = 0; i < handlers; i++) {
+            EventHandlerMessageHandler handler = new EventHandlerMessageHandler(
+                factory.createInvocableHandlerMethod(new BenchmarkConsumers.OrderListener(), method), false,
+                new String[0]);
+            handler.setBeanFactory(beanFactory);
+            handler.afterPropertiesSet();
+            wrappers.add(new DispatchingEventHandlerMessageHandler.ConditionalStreamListenerMessageHandlerWrapper(
+                SPEL_EXPRESSION_PARSER.parseExpression("headers['eventType']=='type-" + i + "'"), handler));
+        }
+        dispatcher = new DispatchingEventHandlerMessageHandler(wrappers,
+            ExpressionUtils.createStandardEvaluationContext(beanFactory));
+        dispatcher.setBeanFactory(beanFactory);
+        dispatcher.afterPropertiesSet();
+
+        BenchmarkEvents.OrderCreated order = new BenchmarkEvents.OrderCreated("SO20200601000001", 10086L, 100);
+        firstMatched = BenchmarkConsumers.eventMessage(order, BenchmarkEvents.OrderCreated.class, false,
+            ImmutableMap.of("eventType", "type-0"));
+        lastMatched = BenchmarkConsumers.eventMessage(order, BenchmarkEvents.OrderCreated.class, false,
+            ImmutableMap.of("eventType", "type-" + (handlers - 1)));
+        unmatched = BenchmarkConsumers.eventMessage(order, BenchmarkEvents.OrderCreated.class, false,
+            ImmutableMap.of("eventType", "type-unknown"));
+    }
+
+    @Benchmark
+    public void dispatchFirstMatched() {
+        dispatcher.handleMessage(firstMatched);
+    }
+
+    @Benchmark
+    public void dispatchLastMatched() {
+        dispatcher.handleMessage(lastMatched);
+    }
+
+    @Benchmark
+    public void dispatchUnmatched() {
+        dispatcher.handleMessage(unmatched);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.config.adapter;
+
+import com.xiaomai.event.benchmark.BenchmarkConsumers;
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import com.xiaomai.event.lifecycle.DefaultEventLifecycle;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The benchmark of {@link EventHandlerMethod#invoke} end to end, the plain
+ * {@link InvocableHandlerMethod} of the same listener is the baseline, so the difference is
+ * the per-message overhead of the event header parsing, lifecycle and logging.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventHandlerMethodBenchmark {
+
+    /**
+     * Whether the event headers are typed or left as bytes by the header mapper
+     */
+    @Param({"typed", "raw"})
+    public String headerForm;
+
+    private InvocableHandlerMethod plainMethod;
+
+    private EventHandlerMethod eventMethod;
+
+    private EventHandlerMessageHandler messageHandler;
+
+    private Message<?> message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkConsumers.OrderListener listener = new BenchmarkConsumers.OrderListener();
+        Method method = ReflectionUtils.findMethod(BenchmarkConsumers.OrderListener.class, "onOrderCreated",
+            BenchmarkEvents.OrderCreated.class);
+
+        DefaultMessageHandlerMethodFactory plainFactory = new DefaultMessageHandlerMethodFactory();
+        plainFactory.setMessageConverter(BenchmarkConsumers.messageConverter());
+        plainFactory.afterPropertiesSet();
+        plainMethod = plainFactory.createInvocableHandlerMethod(listener, method);
+
+        eventMethod = (EventHandlerMethod) BenchmarkConsumers.handlerMethodFactory(new DefaultEventLifecycle())
+            .createInvocableHandlerMethod(listener, method);
+
+        messageHandler = new EventHandlerMessageHandler(eventMethod, false, new String[0]);
+        messageHandler.setBeanFactory(new DefaultListableBeanFactory());
+        messageHandler.afterPropertiesSet();
+
+        message = BenchmarkConsumers.eventMessage(new BenchmarkEvents.OrderCreated("SO20200601000001", 10086L, 100),
+            BenchmarkEvents.OrderCreated.class, "raw".equals(headerForm), Collections.emptyMap());
+    }
+
+    @Benchmark
+    public Object invokePlain() throws Exception {
+        return plainMethod.invoke(message);
+    }
+
+    @Benchmark
+    public Object invokeEvent() throws Exception {
+        return eventMethod.invoke(message);
+    }
+
+    @Benchmark
+    public void handleMessage() {
+        messageHandler.handleMessage(message);
+    }
+}
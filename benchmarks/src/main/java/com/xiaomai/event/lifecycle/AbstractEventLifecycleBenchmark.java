@@ -0,0 +1,90 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.lifecycle;
+
+import com.xiaomai.event.annotation.EventMeta;
+import com.xiaomai.event.benchmark.BenchmarkConsumers;
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmark of {@link AbstractEventLifecycle#onExecute} with the consumer whitelists, the
+ * audit storage is stubbed so only the framework checks are measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AbstractEventLifecycleBenchmark {
+
+    private static final String EVENT_SEQ = "5f0c7d8e-3b1a-4c2d-9e8f-0a1b2c3d4e5f";
+
+    private AbstractEventLifecycle lifecycle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lifecycle = new AbstractEventLifecycle() {
+            @Override
+            public String onRecord(EventMeta eventMeta, String producerKey, Object payload,
+                Map<String, Object> eventAttrs, String channel) {
+                return EVENT_SEQ;
+            }
+
+            @Override
+            public boolean preExecute(String eventSeq, String consumerKey, EventMeta eventMeta,
+                Class<?> payloadClass) {
+                return true;
+            }
+        };
+    }
+
+    @Benchmark
+    public boolean onExecuteNotAudited() {
+        return lifecycle.onExecute(EVENT_SEQ, BenchmarkConsumers.CONSUMER_APP, BenchmarkEvents.OrderCreated.class);
+    }
+
+    @Benchmark
+    public boolean onExecuteNoWhitelist() {
+        return lifecycle.onExecute(EVENT_SEQ, BenchmarkConsumers.CONSUMER_APP, BenchmarkEvents.OrderClosed.class);
+    }
+
+    @Benchmark
+    public boolean onExecuteWhitelisted() {
+        // the consumer is the last one of the whitelist
+        return lifecycle.onExecute(EVENT_SEQ, BenchmarkConsumers.CONSUMER_APP, BenchmarkEvents.OrderPaid.class);
+    }
+
+    @Benchmark
+    public boolean onExecuteNotWhitelisted() {
+        return lifecycle.onExecute(EVENT_SEQ, "bench-app-unknown", BenchmarkEvents.OrderPaid.class);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.lifecycle;
+
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import com.xiaomai.event.id.RandomUuidEventIdGenerator;
+import com.xiaomai.event.id.SnowflakeEventIdGenerator;
+import com.xiaomai.event.id.UlidEventIdGenerator;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmark of {@link IEventLifecycle#onIssue} with the event id generators, the
+ * {@link UUID#randomUUID()} used before is kept as the {@code legacy} baseline.
+ * Run with multiple threads as well to measure the contention on the generators.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventLifecycleBenchmark {
+
+    @Param({"legacy", "uuid", "ulid", "snowflake"})
+    public String generator;
+
+    private DefaultEventLifecycle lifecycle;
+
+    private BenchmarkEvents.OrderCreated order;
+
+    private Map<String, Object> eventAttrs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lifecycle = new DefaultEventLifecycle();
+        switch (generator) {
+            case "legacy":
+                lifecycle.setEventIdGenerator(() -> UUID.randomUUID().toString());
+                break;
+            case "uuid":
+                lifecycle.setEventIdGenerator(new RandomUuidEventIdGenerator());
+                break;
+            case "ulid":
+                lifecycle.setEventIdGenerator(new UlidEventIdGenerator());
+                break;
+            case "snowflake":
+                lifecycle.setEventIdGenerator(new SnowflakeEventIdGenerator(1));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown generator " + generator);
+        }
+        order = new BenchmarkEvents.OrderCreated("SO20200601000001", 10086L, 100);
+        eventAttrs = Collections.emptyMap();
+    }
+
+    @Benchmark
+    public String onIssue() {
+        return lifecycle.onIssue(order, "bench-producer", eventAttrs);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String onIssueContended() {
+        return lifecycle.onIssue(order, "bench-producer", eventAttrs);
+    }
+
+    @Benchmark
+    public String onIssueWithSeq() {
+        // the event id is assigned by the caller, only the issue log is measured
+        return lifecycle.onIssue("SO20200601000001", "bench-producer", order, eventAttrs, null);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.partition;
+
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.utils.PartitionRouteUtil;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.stream.binder.ProducerProperties;
+import org.springframework.context.expression.BeanFactoryResolver;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * The benchmark of {@link EventPartitionHandler#determinePartition}, wired with the
+ * {@link HeaderPartitionKeyExtractor} and {@link BinderPartitionSelector} as the binding does
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventPartitionHandlerBenchmark {
+
+    private static final String DESTINATION = "bench__bench_order_created";
+
+    /**
+     * Whether the event key header is routed in process or re-published in the wire form
+     */
+    @Param({"route", "wire"})
+    public String keyForm;
+
+    private EventPartitionHandler partitionHandler;
+
+    private Message<BenchmarkEvents.OrderCreated> message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("eventPartitionKeyExtractor", new HeaderPartitionKeyExtractor());
+        beanFactory.registerSingleton("eventPartitionSelector", new BinderPartitionSelector());
+        StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
+        evaluationContext.setBeanResolver(new BeanFactoryResolver(beanFactory));
+
+        ProducerProperties producerProperties = new ProducerProperties();
+        producerProperties.setPartitionCount(12);
+        producerProperties.setPartitionKeyExtractorName("eventPartitionKeyExtractor");
+        producerProperties.setPartitionSelectorName("eventPartitionSelector");
+        PartitionRouteUtil.updateDestinationPartitionCount(DESTINATION, 12);
+        partitionHandler = new EventPartitionHandler(DESTINATION, evaluationContext, producerProperties, beanFactory);
+
+        PartitionRoute route = PartitionRouteUtil.composePartitionKey(DESTINATION, "SO20200601000001");
+        message = MessageBuilder.withPayload(new BenchmarkEvents.OrderCreated("SO20200601000001", 10086L, 100))
+            .setHeader(EventBuiltinAttr.EVENT_KEY.getKey(), "route".equals(keyForm) ? route : route.toWireForm())
+            .build();
+    }
+
+    @Benchmark
+    public int determinePartition() {
+        return partitionHandler.determinePartition(message);
+    }
+}
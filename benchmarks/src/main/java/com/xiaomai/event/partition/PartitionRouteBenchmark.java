@@ -0,0 +1,132 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.partition;
+
+import com.xiaomai.event.annotation.EventMeta;
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import com.xiaomai.event.utils.PartitionRouteUtil;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The benchmark of the partition key extraction by {@link EventMeta#partitionOn()} and the
+ * composition of the {@link PartitionRoute}, the reflective join and the string concatenation
+ * used before are kept as baselines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartitionRouteBenchmark {
+
+    private static final String DESTINATION = "bench__bench_stock_changed";
+
+    private BenchmarkEvents.OrderCreated order;
+
+    private BenchmarkEvents.StockChanged stock;
+
+    private PayloadKeyExtractor orderExtractor;
+
+    private PayloadKeyExtractor stockExtractor;
+
+    private List<Field> stockFields;
+
+    private String stockKey;
+
+    private String wireForm;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        order = new BenchmarkEvents.OrderCreated("SO20200601000001", 10086L, 100);
+        stock = new BenchmarkEvents.StockChanged("HZ-01", 123456789L, 7, -1);
+        orderExtractor = PayloadKeyExtractor.compile(BenchmarkEvents.OrderCreated.class,
+            BenchmarkEvents.OrderCreated.class.getDeclaredAnnotation(EventMeta.class).partitionOn());
+        stockExtractor = PayloadKeyExtractor.compile(BenchmarkEvents.StockChanged.class,
+            BenchmarkEvents.StockChanged.class.getDeclaredAnnotation(EventMeta.class).partitionOn());
+        stockFields = Stream.of(BenchmarkEvents.StockChanged.class.getDeclaredAnnotation(EventMeta.class).partitionOn())
+            .map(name -> ReflectionUtils.findField(BenchmarkEvents.StockChanged.class, name))
+            .peek(ReflectionUtils::makeAccessible)
+            .collect(Collectors.toList());
+        stockKey = stockExtractor.extract(stock);
+        wireForm = PartitionRoute.of(DESTINATION, stockKey).toWireForm();
+    }
+
+    @Benchmark
+    public String extractSingleKey() {
+        return orderExtractor.extract(order);
+    }
+
+    @Benchmark
+    public String extractCompositeKey() {
+        return stockExtractor.extract(stock);
+    }
+
+    /**
+     * The reflective join before the compiled extractor, as the baseline of {@link #extractCompositeKey}
+     */
+    @Benchmark
+    public String extractCompositeKeyReflective() {
+        return stockFields.stream().map(f -> ReflectionUtils.getField(f, stock)).filter(Objects::nonNull)
+            .map(String::valueOf).collect(Collectors.joining("-"));
+    }
+
+    @Benchmark
+    public int composePartitionKey() {
+        // the selector consumes the hash code of the route
+        return PartitionRouteUtil.composePartitionKey(DESTINATION, stockKey).hashCode();
+    }
+
+    /**
+     * The string concatenation before {@link PartitionRoute}, as the baseline of {@link #composePartitionKey}
+     */
+    @Benchmark
+    public int composePartitionKeyConcat() {
+        return (DESTINATION + PartitionRoute.WIRE_DELIM + stockKey).hashCode();
+    }
+
+    @Benchmark
+    public String extractDestination() {
+        return PartitionRouteUtil.extractDestination(wireForm);
+    }
+
+    /**
+     * The regex split before the index lookup, as the baseline of {@link #extractDestination}
+     */
+    @Benchmark
+    public String extractDestinationSplit() {
+        return wireForm.split(PartitionRoute.WIRE_DELIM)[0];
+    }
+}
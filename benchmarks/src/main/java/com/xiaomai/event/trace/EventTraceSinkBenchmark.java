@@ -0,0 +1,98 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.trace;
+
+import com.xiaomai.event.benchmark.BenchmarkEvents;
+import com.xiaomai.event.lifecycle.DefaultEventLifecycle;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmark of the lifecycle marks of the consumer with the event trace sinks, the
+ * {@code logging} sink formats in the caller as before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventTraceSinkBenchmark {
+
+    @Param({"logging", "ring-buffer", "sampled"})
+    public String sink;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private DefaultEventLifecycle lifecycle;
+
+    private EventTraceSink eventTraceSink;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (sink) {
+            case "logging":
+                eventTraceSink = new LoggingEventTraceSink();
+                break;
+            case "ring-buffer":
+                eventTraceSink = new RingBufferEventTraceSink(new LoggingEventTraceSink(), 8192);
+                break;
+            case "sampled":
+                eventTraceSink = new SampledEventTraceSink(new RingBufferEventTraceSink(new LoggingEventTraceSink(), 8192),
+                    1.0, Collections.singletonMap(BenchmarkEvents.OrderCreated.class.getName(), 0.1));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown sink " + sink);
+        }
+        lifecycle = new DefaultEventLifecycle();
+        lifecycle.setEventTraceSink(eventTraceSink);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventTraceSink.close();
+    }
+
+    @Benchmark
+    public boolean executeAndCommit() {
+        String eventSeq = "bench-" + sequence.incrementAndGet();
+        boolean needExec = lifecycle.onExecute(eventSeq, "bench-consumer", BenchmarkEvents.OrderCreated.class);
+        lifecycle.onSuccess(eventSeq, "bench-consumer", BenchmarkEvents.OrderCreated.class);
+        return needExec;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean executeAndCommitContended() {
+        return executeAndCommit();
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The per-agent dispatcher to stage the asynchronously triggered events in a bounded queue
+ * and hand them over to the event channel on a background thread, so the callers never block
+ * on the binder.
+ *
+ * The staged events are drained in batches of up to {@code batchSize} events, or whatever is
+ * staged once the first event has lingered for {@code lingerMs}, and the events of a batch are
+ * sent one by one in the staged order; the batching on the wire is left to the producer of the
+ * binder, e.g. the {@code linger.ms} and {@code batch.size} of kafka.
+ *
+ * The future of each event is completed once the output channel accepted the message. With the
+ * default asynchronous kafka producer it means the record is handed over to the producer, *NOT*
+ * acknowledged by the broker; set {@code spring.cloud.stream.kafka.bindings.<output>.producer.sync=true}
+ * to complete the future after the broker acknowledgment, and fail it if the send fails.
+ */
+@Slf4j
+final class AsyncEventDispatcher<T> {
+
+    /**
+     * The poll interval of the idle dispatcher thread to check the shutdown flag
+     */
+    private static final long IDLE_POLL_MS = 100L;
+
+    /**
+     * The max time to wait for the pending events to be flushed on shutdown
+     */
+    private static final long SHUTDOWN_TIMEOUT_MS = 10000L;
+
+    private final EventAgent<T> eventAgent;
+
+    private final String name;
+
+    private final BlockingQueue<PendingEvent<T>> queue;
+
+    private final int batchSize;
+
+    private final long lingerNanos;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private volatile boolean closed = false;
+
+    private volatile Thread worker;
+
+    /**
+     * CONSTRUCTOR
+     * @param eventAgent the event agent to dispatch the events
+     * @param name the dispatcher name, usually the event destination
+     * @param queueCapacity the max count of the staged events
+     * @param batchSize the max count of the events flushed in one batch
+     * @param lingerMs the max time to wait for a batch to fill
+     */
+    AsyncEventDispatcher(EventAgent<T> eventAgent, String name, int queueCapacity, int batchSize, long lingerMs) {
+        this.eventAgent = eventAgent;
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, lingerMs));
+    }
+
+    /**
+     * Stage the event to dispatch
+     * @param payload the event payload
+     * @param producer the event producer key
+     * @param eventAttrs the event attributes
+     * @param payloadKey the event partition key
+     * @return the future completed with the event sequence once the event is accepted by the channel
+     */
+    CompletableFuture<String> submit(T payload, String producer, Map<String, Object> eventAttrs, Object payloadKey) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new RejectedExecutionException("event dispatcher [" + name + "] is closed"));
+            return future;
+        }
+        ensureStarted();
+        PendingEvent<T> pending = new PendingEvent<>(payload, producer, eventAttrs, payloadKey, future);
+        if (!queue.offer(pending)) {
+            future.completeExceptionally(new RejectedExecutionException("event dispatch queue of [" + name + "] is full"));
+        } else if (closed && queue.remove(pending)) {
+            // closed concurrently, the worker and the close may have missed the event
+            future.completeExceptionally(new RejectedExecutionException("event dispatcher [" + name + "] is closed"));
+        }
+        return future;
+    }
+
+    /**
+     * Close the dispatcher, the staged events are flushed before return
+     */
+    void close() {
+        closed = true;
+        Thread thread = this.worker;
+        if (thread != null) {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // fail the events which are still not flushed
+        rejectStaged();
+    }
+
+    /**
+     * Fail the futures of the staged events as the dispatcher is closed
+     * @return the count of the failed events
+     */
+    private int rejectStaged() {
+        int rejected = 0;
+        PendingEvent<T> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new RejectedExecutionException("event dispatcher [" + name + "] is closed"));
+            rejected++;
+        }
+        return rejected;
+    }
+
+    private void ensureStarted() {
+        if (!started.get() && started.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::run, "scs-event-dispatcher-" + name);
+            thread.setDaemon(true);
+            this.worker = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * The dispatch routine: collect a batch on size or linger-time trigger and flush it. If the
+     * worker exits before the dispatcher is closed, e.g. on an interrupt, the dispatcher is closed
+     * and the staged events are failed, so no future is left pending.
+     */
+    private void run() {
+        List<PendingEvent<T>> batch = new ArrayList<>(batchSize);
+        try {
+            dispatchLoop(batch);
+        } finally {
+            closed = true;
+            for (PendingEvent<T> pending : batch) {
+                pending.future.completeExceptionally(new RejectedExecutionException("event dispatcher [" + name + "] is closed"));
+            }
+            int rejected = rejectStaged();
+            if (rejected > 0) {
+                log.warn("event dispatcher [{}] terminated, {} staged events rejected", name, rejected);
+            }
+        }
+    }
+
+    private void dispatchLoop(List<PendingEvent<T>> batch) {
+        boolean interrupted = false;
+        while (!interrupted && !(closed && queue.isEmpty())) {
+            try {
+                PendingEvent<T> first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingEvent<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            flush(batch);
+        }
+        if (interrupted) {
+            log.warn("event dispatcher [{}] interrupted, closing it", name);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<PendingEvent<T>> batch) {
+        for (PendingEvent<T> pending : batch) {
+            try {
+                pending.future.complete(eventAgent.dispatchEvent(pending.payload, pending.producer,
+                    pending.eventAttrs, pending.payloadKey, true));
+            } catch (Throwable e) {
+                log.error("Failed to dispatch event of [{}]: ", name, e);
+                pending.future.completeExceptionally(e);
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * The staged event holder
+     */
+    private static final class PendingEvent<T> {
+
+        private final T payload;
+
+        private final String producer;
+
+        private final Map<String, Object> eventAttrs;
+
+        private final Object payloadKey;
+
+        private final CompletableFuture<String> future;
+
+        private PendingEvent(T payload, String producer, Map<String, Object> eventAttrs, Object payloadKey,
+            CompletableFuture<String> future) {
+            this.payload = payload;
+            this.producer = producer;
+            this.eventAttrs = eventAttrs;
+            this.payloadKey = payloadKey;
+            this.future = future;
+        }
+    }
+}
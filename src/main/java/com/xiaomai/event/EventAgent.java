@@ -34,42 +34,47 @@
 
 package com.xiaomai.event;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.xiaomai.event.annotation.EventProducer;
 import com.xiaomai.event.annotation.EventMeta;
 import com.xiaomai.event.constant.EventBuiltinAttr;
 import com.xiaomai.event.lifecycle.IEventLifecycle;
+import com.xiaomai.event.metrics.EventMetrics;
+import com.xiaomai.event.partition.PartitionRoute;
+import com.xiaomai.event.partition.HotKeyDetector;
+import com.xiaomai.event.partition.PayloadKeyExtractor;
+import com.xiaomai.event.utils.EventClassDescriptor;
 import com.xiaomai.event.utils.EventBindingUtils;
 import com.xiaomai.event.utils.PartitionRouteUtil;
-import org.springframework.cloud.stream.binding.BinderAwareChannelResolver;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.core.DestinationResolver;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.util.Assert;
-import org.springframework.util.CollectionUtils;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
-import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * @author baihe Created on 2020/3/18 1:51 PM
  */
 public class EventAgent<T> {
 
-    private static final String DELIM_PARTITION_KEY = "-";
-
     private final Class<T> payloadClass;
 
+    private final String payloadClassName;
+
     private final EventMeta eventMeta;
 
     private final String channel;
@@ -78,11 +83,58 @@ public class EventAgent<T> {
 
     private final IEventLifecycle eventLifecycle;
 
-    private final BinderAwareChannelResolver resolver;
+    private final DestinationResolver<MessageChannel> resolver;
 
     private static final Map<String, EventAgent> agentMap = new ConcurrentHashMap<>();
 
-    private final List<Field> partitionFields;
+    private final PayloadKeyExtractor keyExtractor;
+
+    private final String destination;
+
+    /**
+     * The *FULL* output binding name of the event channel
+     */
+    private final String bindingName;
+
+    /**
+     * The resolved output message channel, refreshed when the output binding is restarted
+     */
+    private volatile MessageChannel messageChannel;
+
+    private final AsyncEventDispatcher<T> asyncDispatcher;
+
+    /**
+     * The event name to tag the metrics
+     */
+    private final String eventName;
+
+    /**
+     * The metrics of the triggers
+     */
+    private volatile EventMetrics eventMetrics = EventMetrics.NOOP;
+
+    /**
+     * The detector of the hot partition keys, null if not detected
+     */
+    private volatile HotKeyDetector hotKeyDetector;
+
+    /**
+     * Whether the unkeyed events are routed by the sticky partitioner
+     */
+    private final boolean stickyUnkeyed;
+
+    /**
+     * The internal CONSTRUCTOR of event agent
+     * @param payloadClass the event payload class
+     * @param channel the event channel
+     * @param appName the application name
+     * @param eventLifecycle the event life cycle proxy
+     * @param resolver the message channel resolver, usually the spring-cloud-stream binder aware one
+     */
+    protected EventAgent(Class<T> payloadClass, String channel, String appName, IEventLifecycle eventLifecycle, DestinationResolver<MessageChannel> resolver) {
+        this(payloadClass, channel, appName, eventLifecycle, resolver, EventAgentFactory.DEFAULT_ASYNC_QUEUE_CAPACITY,
+            EventAgentFactory.DEFAULT_ASYNC_BATCH_SIZE, EventAgentFactory.DEFAULT_ASYNC_LINGER_MS);
+    }
 
     /**
      * The internal CONSTRUCTOR of event agent
@@ -90,29 +142,42 @@ public class EventAgent<T> {
      * @param channel the event channel
      * @param appName the application name
      * @param eventLifecycle the event life cycle proxy
-     * @param resolver the spring-cloud-stream message channel resolver
+     * @param resolver the message channel resolver, usually the spring-cloud-stream binder aware one
+     * @param asyncQueueCapacity the max count of the staged asynchronous events
+     * @param asyncBatchSize the max count of the asynchronous events flushed in one batch
+     * @param asyncLingerMs the max time to wait for a batch of asynchronous events to fill
      */
-    protected EventAgent(Class<T> payloadClass, String channel, String appName, IEventLifecycle eventLifecycle, BinderAwareChannelResolver resolver) {
+    protected EventAgent(Class<T> payloadClass, String channel, String appName, IEventLifecycle eventLifecycle,
+        DestinationResolver<MessageChannel> resolver, int asyncQueueCapacity, int asyncBatchSize, long asyncLingerMs) {
         this.appName = appName;
         this.eventLifecycle = eventLifecycle;
         this.resolver = resolver;
         this.payloadClass = payloadClass;
+        this.payloadClassName = payloadClass.getName();
         this.channel = channel;
-        this.eventMeta = payloadClass.getDeclaredAnnotation(EventMeta.class);
+        EventClassDescriptor descriptor = EventClassDescriptor.of(payloadClass);
+        this.eventMeta = descriptor.getEventMeta();
         Assert.state(null != this.eventMeta, "the specified payloadClass is not marked with the meta annotation");
 
-        if (this.eventMeta.partitionOn().length > 0) {
-            Map<String, Field> fieldMap = Stream.of(this.payloadClass.getDeclaredFields()).collect(Collectors.toMap(
-                Field::getName,
-                Function.identity()));
-            this.partitionFields = Stream.of(this.eventMeta.partitionOn()).map(fname -> {
-                Field field = fieldMap.get(fname);
-                ReflectionUtils.makeAccessible(field);
-                return field;
-            }).collect(Collectors.toList());
-        } else {
-            this.partitionFields = Lists.newArrayList();
+        // the partition key extractor is compiled once instead of reflecting on each trigger
+        this.keyExtractor = descriptor.getKeyExtractor();
+        this.eventName = descriptor.getEventName();
+        this.destination = EventBindingUtils.resolveDestination(payloadClass, channel);
+
+        // resolve and validate the output channel once instead of on each trigger
+        String simpleBindingName = EventBindingUtils.resolveOutputBindingName(payloadClass);
+        if (StringUtils.hasText(channel)) {
+            EventProducer eventProducer = EventBindingUtils.getEventProducerConf(payloadClass);
+            Assert.state(!(null == eventProducer || eventProducer.channels().length == 0
+              || !Sets.newHashSet(eventProducer.channels()).contains(channel)), "channel not registered to trigger event");
         }
+        this.bindingName = EventBindingUtils.composeEventChannelBeanName(simpleBindingName, channel);
+        EventProducer producerConf = EventBindingUtils.getEventProducerConf(payloadClass);
+        this.stickyUnkeyed = null == this.keyExtractor && null != producerConf && producerConf.stickyPartition();
+        this.messageChannel = resolver.resolveDestination(bindingName);
+
+        this.asyncDispatcher = new AsyncEventDispatcher<>(this, destination,
+            asyncQueueCapacity, asyncBatchSize, asyncLingerMs);
     }
 
     /**
@@ -153,43 +218,220 @@ public class EventAgent<T> {
      * @return the event sequence of the dispatched event
      */
     public String triggerEvent(T payload, String producer, Map<String, Object> eventAttrs, Object payloadKey) {
-        String eventSeq = eventLifecycle.onIssue(payload, producer, eventAttrs);
+        return dispatchEvent(payload, producer, eventAttrs, payloadKey, false);
+    }
 
-        if (null == payloadKey) {
-            payloadKey = (!CollectionUtils.isEmpty(partitionFields)) ?
-                partitionFields.stream().map(f -> ReflectionUtils.getField(f, payload)).filter(
-                    Objects::nonNull).map(String::valueOf)
-                    .collect(Collectors.joining(DELIM_PARTITION_KEY))
-                : Math.abs(payload.hashCode());
+    /**
+     * Trigger the event with payload asynchronously
+     * @param payload the event payload
+     * @return the future of the event sequence, completed once the event is accepted by the channel
+     */
+    public CompletableFuture<String> triggerEventAsync(T payload) {
+        return triggerEventAsync(payload, null);
+    }
+
+    /**
+     * Trigger the event with payload and partition key asynchronously
+     * @param payload the event payload
+     * @param payloadKey the event partition key
+     * @return the future of the event sequence, completed once the event is accepted by the channel
+     */
+    public CompletableFuture<String> triggerEventAsync(T payload, Object payloadKey) {
+        return triggerEventAsync(payload, appName, new HashMap<>(), payloadKey);
+    }
+
+    /**
+     * Trigger the event with payload, producer and partition key asynchronously
+     * @param payload the event payload
+     * @param producer the event producer key
+     * @param payloadKey the event partition key
+     * @return the future of the event sequence, completed once the event is accepted by the channel
+     */
+    public CompletableFuture<String> triggerEventAsync(T payload, String producer, Object payloadKey) {
+        return triggerEventAsync(payload, producer, new HashMap<>(), payloadKey);
+    }
+
+    /**
+     * Trigger the event with payload and attributes asynchronously.
+     * The event is staged in the bounded queue of the agent and sent on the dispatcher thread,
+     * the returned future fails if the queue is full. The future completes once the output
+     * channel accepted the event, which is the broker acknowledgment only with a sync producer,
+     * see {@link AsyncEventDispatcher}.
+     * @param payload the event payload
+     * @param producer the event producer key
+     * @param eventAttrs the event attributes
+     * @param payloadKey the event partition key
+     * @return the future of the event sequence, completed once the event is accepted by the channel
+     */
+    public CompletableFuture<String> triggerEventAsync(T payload, String producer, Map<String, Object> eventAttrs, Object payloadKey) {
+        return asyncDispatcher.submit(payload, producer, eventAttrs, payloadKey);
+    }
+
+    /**
+     * Trigger the events with payloads asynchronously, the events are sent in the iteration order
+     * @param payloads the event payloads
+     * @return the future of the event sequences, completed once all the events are accepted by the channel
+     */
+    public CompletableFuture<List<String>> triggerEvents(Collection<T> payloads) {
+        List<CompletableFuture<String>> futures = payloads.stream()
+            .map(payload -> triggerEventAsync(payload))
+            .collect(Collectors.toList());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(v -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    /**
+     * Dispatch the event to the event channel
+     * @param payload the event payload
+     * @param producer the event producer key
+     * @param eventAttrs the event attributes
+     * @param payloadKey the event partition key
+     * @param requireAck whether to fail if the send is not acknowledged by the binder
+     * @return the event sequence of the dispatched event
+     */
+    String dispatchEvent(T payload, String producer, Map<String, Object> eventAttrs, Object payloadKey, boolean requireAck) {
+        long start = System.nanoTime();
+        try {
+            String eventSeq = doDispatchEvent(payload, producer, eventAttrs, payloadKey, requireAck);
+            eventMetrics.recordTrigger(eventName, channel, EventMetrics.OUTCOME_SUCCESS, System.nanoTime() - start);
+            return eventSeq;
+        } catch (RuntimeException e) {
+            eventMetrics.recordTrigger(eventName, channel, EventMetrics.OUTCOME_FAILURE, System.nanoTime() - start);
+            throw e;
         }
-        // compose the *FULL* partition key to encode the destination into it
-        final Object partitionKey = PartitionRouteUtil
-                .composePartitionKey(payload, channel, payloadKey);
-
-
-        Map<String, Object> eventHeaders = new HashMap<String, Object>() {
-            {
-                put(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq);
-                put(EventBuiltinAttr.EVENT_KEY.getKey(), partitionKey);
-                put(EventBuiltinAttr.EVENT_CLASS.getKey(), payload.getClass().getName());
-                put(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(), System.currentTimeMillis());
-                put(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), appName);
+    }
+
+    /**
+     * Set the metrics of the triggers
+     * @param eventMetrics the event metrics
+     */
+    void setEventMetrics(EventMetrics eventMetrics) {
+        Assert.notNull(eventMetrics, "eventMetrics cannot be null");
+        this.eventMetrics = eventMetrics;
+    }
+
+    /**
+     * Set the detector of the hot partition keys
+     * @param hotKeyDetector the hot key detector
+     */
+    void setHotKeyDetector(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    /**
+     * Salt the route of the hot key over the sub-partitions if the event relaxes the ordering,
+     * only the partition selection is salted, the event key header keeps the raw key
+     * @param detector the hot key detector
+     * @param route the partition route
+     * @return the partition route, salted if hot and spread
+     */
+    private PartitionRoute spreadHotKey(HotKeyDetector detector, PartitionRoute route) {
+        if (!detector.record(route.getKey())) {
+            return route;
+        }
+        int spread = eventMeta.hotKeySpread();
+        eventMetrics.recordHotKey(eventName, spread > 1);
+        return spread > 1 ? route.salted(ThreadLocalRandom.current().nextInt(spread)) : route;
+    }
+
+    private String doDispatchEvent(T payload, String producer, Map<String, Object> eventAttrs, Object payloadKey,
+        boolean requireAck) {
+        String eventSeq = eventLifecycle.onIssue(payload, producer, eventAttrs);
+
+        final PartitionRoute partitionKey;
+        if (null == payloadKey && stickyUnkeyed) {
+            // no order to keep, the partition is selected by the sticky partitioner
+            partitionKey = PartitionRoute.sticky(destination, Math.abs(payload.hashCode()));
+        } else {
+            if (null == payloadKey) {
+                payloadKey = (null != keyExtractor) ? keyExtractor.extract(payload) : Math.abs(payload.hashCode());
             }
-        };
-        eventHeaders.putAll(eventAttrs);
+            // compose the *FULL* partition key to encode the destination into it
+            PartitionRoute route = PartitionRouteUtil.composePartitionKey(destination, payloadKey);
+            HotKeyDetector detector = this.hotKeyDetector;
+            partitionKey = null != detector ? spreadHotKey(detector, route) : route;
+        }
 
-        String simpleBindingName = EventBindingUtils.resolveOutputBindingName(payloadClass);
-        if (StringUtils.hasText(channel)) {
-            EventProducer eventProducer = EventBindingUtils.getEventProducerConf(payloadClass);
-            Assert.state(!(null == eventProducer || eventProducer.channels().length == 0
-              || !Sets.newHashSet(eventProducer.channels()).contains(channel)), "channel not registered to trigger event");
+        Message<T> message = MessageBuilder.createMessage(payload,
+            buildEventHeaders(payload, eventSeq, partitionKey, eventAttrs));
+        if (!messageChannel.send(message) && requireAck) {
+            throw new MessageDeliveryException(message, "event " + eventSeq + " not acknowledged by the binder");
         }
-        MessageChannel messageChannel = resolver.resolveDestination(
-            EventBindingUtils.composeEventChannelBeanName(simpleBindingName, channel));
-        messageChannel.send(MessageBuilder.createMessage(payload, new MessageHeaders(eventHeaders)));
         return eventSeq;
     }
 
+    /**
+     * Build the event headers in a single map, which is wrapped by the message *WITHOUT* copy
+     * @param payload the event payload
+     * @param eventSeq the event sequence
+     * @param partitionKey the partition key of the event
+     * @param eventAttrs the event attributes
+     * @return the event headers
+     */
+    MessageHeaders buildEventHeaders(T payload, String eventSeq, PartitionRoute partitionKey,
+        Map<String, Object> eventAttrs) {
+        MessageHeaderAccessor accessor = new MessageHeaderAccessor();
+        accessor.setHeader(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq);
+        accessor.setHeader(EventBuiltinAttr.EVENT_KEY.getKey(), partitionKey);
+        accessor.setHeader(EventBuiltinAttr.EVENT_CLASS.getKey(),
+            payload.getClass() == payloadClass ? payloadClassName : payload.getClass().getName());
+        accessor.setHeader(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(), System.currentTimeMillis());
+        accessor.setHeader(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), appName);
+        if (!eventAttrs.isEmpty()) {
+            accessor.copyHeaders(eventAttrs);
+        }
+        // the accessor is sealed here with the message id generated, no timestamp is added
+        // for the trigger time is carried in the event header
+        return accessor.getMessageHeaders();
+    }
+
+    /**
+     * Re-resolve the output message channel of the agent
+     */
+    void refreshChannel() {
+        this.messageChannel = resolver.resolveDestination(bindingName);
+    }
+
+    /**
+     * Refresh the cached output channel of the agent when the output binding is (re)started
+     * @param payloadClass the event payload class
+     * @param channel the event sub channel
+     */
+    public static void refreshBinding(Class<?> payloadClass, String channel) {
+        EventAgent<?> eventAgent = agentMap.get(EventBindingUtils.resolveDestination(payloadClass, channel));
+        if (null != eventAgent) {
+            eventAgent.refreshChannel();
+        }
+    }
+
+    /**
+     * Close the asynchronous dispatchers of all the agents, the staged events are flushed before return.
+     * The closed agents are removed, so a restarted context creates new ones.
+     */
+    public static void closeAll() {
+        for (String agentKey : new ArrayList<>(agentMap.keySet())) {
+            EventAgent<?> agent = agentMap.remove(agentKey);
+            if (null != agent) {
+                agent.asyncDispatcher.close();
+            }
+        }
+    }
+
+    /**
+     * Get the hot partition keys detected by the agents
+     * @return the hot keys with their estimated counts by the destination
+     */
+    public static Map<String, Map<String, Long>> getHotKeys() {
+        Map<String, Map<String, Long>> hotKeys = new HashMap<>();
+        agentMap.forEach((destination, agent) -> {
+            HotKeyDetector detector = agent.hotKeyDetector;
+            if (null != detector) {
+                hotKeys.put(destination, detector.getHotKeys());
+            }
+        });
+        return hotKeys;
+    }
+
     /**
      * Retrieve the EventAgent object by event payload class
      * @param payloadClass the event payload class
@@ -18,7 +18,12 @@
 package com.xiaomai.event;
 
 import com.xiaomai.event.lifecycle.IEventLifecycle;
+import com.xiaomai.event.metrics.EventMetrics;
+import com.xiaomai.event.partition.HotKeyDetector;
+import com.xiaomai.event.utils.EventBindingUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.stream.binding.BinderAwareChannelResolver;
 
@@ -29,7 +34,13 @@ import org.springframework.cloud.stream.binding.BinderAwareChannelResolver;
  * Created on 2020-03-13 23:03
  */
 @Slf4j
-public class EventAgentFactory {
+public class EventAgentFactory implements DisposableBean {
+
+    static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 10000;
+
+    static final int DEFAULT_ASYNC_BATCH_SIZE = 100;
+
+    static final long DEFAULT_ASYNC_LINGER_MS = 5L;
 
     /**
      * The application name to mark the event attributes
@@ -37,6 +48,49 @@ public class EventAgentFactory {
     @Value("${spring.application.name:application}")
     private String appName;
 
+    /**
+     * The max count of the asynchronous events staged in each agent
+     */
+    @Value("${scs.event.async.queue-capacity:" + DEFAULT_ASYNC_QUEUE_CAPACITY + "}")
+    private int asyncQueueCapacity = DEFAULT_ASYNC_QUEUE_CAPACITY;
+
+    /**
+     * The max count of the asynchronous events flushed in one batch
+     */
+    @Value("${scs.event.async.batch-size:" + DEFAULT_ASYNC_BATCH_SIZE + "}")
+    private int asyncBatchSize = DEFAULT_ASYNC_BATCH_SIZE;
+
+    /**
+     * The max time in milliseconds to wait for a batch of asynchronous events to fill
+     */
+    @Value("${scs.event.async.linger-ms:" + DEFAULT_ASYNC_LINGER_MS + "}")
+    private long asyncLingerMs = DEFAULT_ASYNC_LINGER_MS;
+
+    /**
+     * Whether to detect the hot partition keys of all the events, the events spreading the hot
+     * keys are always detected
+     */
+    @Value("${scs.event.hot-key.enabled:false}")
+    private boolean hotKeyEnabled;
+
+    /**
+     * The min ratio of a hot key in all the keys of the destination
+     */
+    @Value("${scs.event.hot-key.ratio:0.05}")
+    private double hotKeyRatio = 0.05;
+
+    /**
+     * The min count of a hot key in the detection window
+     */
+    @Value("${scs.event.hot-key.min-count:1000}")
+    private long hotKeyMinCount = 1000L;
+
+    /**
+     * The detection window in milliseconds, the counts are halved every window
+     */
+    @Value("${scs.event.hot-key.window-ms:10000}")
+    private long hotKeyWindowMs = 10000L;
+
     /**
      * The event lifecycle instance to trace the event procession
      */
@@ -47,6 +101,11 @@ public class EventAgentFactory {
      */
     private BinderAwareChannelResolver resolver;
 
+    /**
+     * The metrics of the triggers
+     */
+    private EventMetrics eventMetrics = EventMetrics.NOOP;
+
     /**
      * CONSTRUCTOR
      * @param eventLifecycle the provided event lifecycle instance
@@ -57,6 +116,15 @@ public class EventAgentFactory {
         this.resolver = resolver;
     }
 
+    /**
+     * Set the metrics of the triggers, the {@link EventMetrics} bean is injected if provided
+     * @param eventMetrics the event metrics
+     */
+    @Autowired(required = false)
+    public void setEventMetrics(EventMetrics eventMetrics) {
+        this.eventMetrics = eventMetrics;
+    }
+
     private static EventAgentFactory INSTANCE;
 
     /**
@@ -74,8 +142,23 @@ public class EventAgentFactory {
      * @return the created agent
      */
     public static <T> EventAgent<T> createAgent(Class<T> payloadClass, String channel) {
-        return new EventAgent<>(payloadClass, channel, INSTANCE.appName,
-            INSTANCE.eventLifecycle, INSTANCE.resolver);
+        EventAgent<T> agent = new EventAgent<>(payloadClass, channel, INSTANCE.appName,
+            INSTANCE.eventLifecycle, INSTANCE.resolver,
+            INSTANCE.asyncQueueCapacity, INSTANCE.asyncBatchSize, INSTANCE.asyncLingerMs);
+        agent.setEventMetrics(INSTANCE.eventMetrics);
+        if (INSTANCE.hotKeyEnabled || EventBindingUtils.resolveEventMeta(payloadClass).hotKeySpread() > 1) {
+            agent.setHotKeyDetector(new HotKeyDetector(INSTANCE.hotKeyRatio, INSTANCE.hotKeyMinCount,
+                INSTANCE.hotKeyWindowMs));
+        }
+        return agent;
+    }
+
+    /**
+     * Flush the staged asynchronous events on shutdown
+     */
+    @Override
+    public void destroy() {
+        EventAgent.closeAll();
     }
 }
 
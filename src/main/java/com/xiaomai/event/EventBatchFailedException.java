@@ -0,0 +1,60 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Thrown by the batch event handler to report the events failed in the batch, the other
+ * events of the batch are marked as succeeded
+ */
+public class EventBatchFailedException extends RuntimeException {
+
+    /**
+     * The failures keyed by the index of the event in the batch
+     */
+    private final Map<Integer, Exception> failures;
+
+    /**
+     * Construct the exception with the failed events
+     * @param failures the failures keyed by the index of the event in the batch
+     */
+    public EventBatchFailedException(Map<Integer, ? extends Exception> failures) {
+        super(failures.size() + " events of the batch failed at " + failures.keySet());
+        this.failures = Collections.unmodifiableMap(new TreeMap<>(failures));
+    }
+
+    /**
+     * Construct the exception with a single failed event
+     * @param index the index of the failed event in the batch
+     * @param cause the failure of the event
+     */
+    public EventBatchFailedException(int index, Exception cause) {
+        this(Collections.singletonMap(index, cause));
+    }
+
+    /**
+     * Get the failures of the batch
+     * @return the failures keyed by the index of the event in the batch
+     */
+    public Map<Integer, Exception> getFailures() {
+        return failures;
+    }
+}
@@ -226,6 +226,8 @@ public class EventBindable implements InitializingBean, Bindable {
                         outputHolder.getName()));
                 }
                 bindings.add(bindingService.bindProducer(outputHolder.getBoundTarget(), outputHolder.getName()));
+                // the agent caches the output channel, refresh it on the restarted binding
+                EventAgent.refreshBinding(eventPayloadClass, channel);
             }
         }
         return bindings;
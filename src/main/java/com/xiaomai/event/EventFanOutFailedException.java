@@ -0,0 +1,52 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Thrown by the parallel fan-out of a message to the matching handlers, reporting the handlers
+ * failed before the dispatcher returned. The failures of the events are reported to the lifecycle
+ * instead, so only the messages which are not events are rethrown.
+ */
+public class EventFanOutFailedException extends RuntimeException {
+
+    /**
+     * The failures keyed by the handler method, e.g. {@code OrderHandler#onCreated[1 args]}
+     */
+    private final Map<String, Exception> failures;
+
+    /**
+     * Construct the exception with the failed handlers
+     * @param failures the failures keyed by the handler method
+     */
+    public EventFanOutFailedException(Map<String, ? extends Exception> failures) {
+        super(failures.size() + " handlers of the fan-out failed at " + new TreeMap<>(failures).keySet());
+        this.failures = Collections.unmodifiableMap(new TreeMap<>(failures));
+        this.failures.values().forEach(this::addSuppressed);
+    }
+
+    /**
+     * Get the failures of the fan-out
+     * @return the failures keyed by the handler method
+     */
+    public Map<String, Exception> getFailures() {
+        return failures;
+    }
+}
@@ -34,6 +34,7 @@
 
 package com.xiaomai.event.annotation;
 
+import com.xiaomai.event.enums.EventExecutionMode;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 
 import java.lang.annotation.*;
@@ -71,4 +72,45 @@ public @interface EventHandler {
 
 	int maxAttempts() default 3;
 
+	/**
+	 * the max count of the events consumed in one invocation, the handler method receives
+	 * the {@code List} of the event payloads if greater than 1, e.g.
+	 * {@code void handle(List<MyEvent> events)}. The binder must support the batch mode,
+	 * the size is mapped to {@code max.poll.records} of the kafka binder.
+	 */
+	int batchSize() default 1;
+
+	/**
+	 * the max time in milliseconds the binder waits for a batch to fill, only used if
+	 * {@link #batchSize()} is greater than 1. It is mapped to {@code fetch.max.wait.ms} of
+	 * the kafka binder, which bounds the wait for {@code fetch.min.bytes} of the records.
+	 */
+	long batchTimeoutMs() default 500;
+
+	/**
+	 * the count of the worker lanes executing the events of one consumer, the events are spread
+	 * across the lanes by the event key, so the order is kept per key while different keys run
+	 * in parallel. The offsets are committed only once all the lanes finish up to them, which
+	 * relies on the manual acknowledgment of the kafka binder.
+	 */
+	int lanes() default 1;
+
+	/**
+	 * the max count of the in-flight invocations of the handler method returning a
+	 * {@code CompletableFuture} or a reactive streams {@code Publisher}, or executed in the
+	 * {@link EventExecutionMode#VIRTUAL_THREAD} mode, the consumer blocks when it is reached.
+	 * The lifecycle, the retries by {@link #maxAttempts()} and the acknowledgment of the event
+	 * complete with the returned future.
+	 */
+	int maxInFlight() default 256;
+
+	/**
+	 * the execution mode of the handler method, inherits {@code scs.event.executor.mode} by
+	 * default. In the {@link EventExecutionMode#VIRTUAL_THREAD} mode each event is invoked in a
+	 * virtual thread, ordered by the event key, so the blocking handlers scale without tuning
+	 * {@link #concurrency()}. The acknowledgment of the event is deferred until the invocation
+	 * completes.
+	 */
+	EventExecutionMode executionMode() default EventExecutionMode.DEFAULT;
+
 }
@@ -88,4 +88,12 @@ public @interface EventMeta {
 	 */
 	String[] consumerWhitelist() default {};
 
+	/**
+	 * The count of the sub-partitions to spread a detected hot key over, 0 or 1 to keep the
+	 * per-key ordering. With K > 1 the partition selection of the hot keys is salted as
+	 * {@code <key>#<0..K-1>}, so the events of a hot key are no longer ordered. The salt is not
+	 * carried in the {@code scs.EventKey} header, the consumers receive the raw key.
+	 */
+	int hotKeySpread() default 0;
+
 }
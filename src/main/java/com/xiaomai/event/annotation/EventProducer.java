@@ -35,4 +35,13 @@ public @interface EventProducer {
    * will maintain the kafka native partition data in {@link com.xiaomai.event.utils.PartitionRouteUtil}
    */
   int partitions() default 0;
+
+  /**
+   * Whether to stick the unkeyed events, i.e., without the partition key or
+   * {@link com.xiaomai.event.annotation.EventMeta#partitionOn()}, to one partition until
+   * {@code scs.event.partition.sticky.batch-size} events are sent or
+   * {@code scs.event.partition.sticky.linger-ms} elapses, then rotate, for bigger producer batches
+   * default: false - spread the unkeyed events by the payload hash code
+   */
+  boolean stickyPartition() default false;
 }
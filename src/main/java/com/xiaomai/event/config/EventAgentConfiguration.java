@@ -34,18 +34,44 @@
 
 package com.xiaomai.event.config;
 
+import com.xiaomai.event.id.EventIdGenerator;
+import com.xiaomai.event.id.RandomUuidEventIdGenerator;
+import com.xiaomai.event.id.SnowflakeEventIdGenerator;
+import com.xiaomai.event.id.UlidEventIdGenerator;
 import com.xiaomai.event.partition.BinderPartitionSelector;
+import com.xiaomai.event.partition.ConsistentHashPartitionSelector;
+import com.xiaomai.event.enums.EventBackpressurePolicy;
+import com.xiaomai.event.lifecycle.BatchingEventLifecycle;
 import com.xiaomai.event.lifecycle.DefaultEventLifecycle;
+import com.xiaomai.event.lifecycle.IBatchEventLifecycle;
 import com.xiaomai.event.lifecycle.IEventLifecycle;
 import com.xiaomai.event.EventAgentFactory;
+import com.xiaomai.event.metrics.EventMetrics;
+import com.xiaomai.event.metrics.MicrometerEventMetrics;
 import com.xiaomai.event.partition.HeaderPartitionKeyExtractor;
+import com.xiaomai.event.trace.EventTraceSink;
+import com.xiaomai.event.trace.LoggingEventTraceSink;
+import com.xiaomai.event.trace.RingBufferEventTraceSink;
+import com.xiaomai.event.trace.SampledEventTraceSink;
+import com.xiaomai.event.utils.PartitionRouteUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.stream.binder.PartitionSelectorStrategy;
 import org.springframework.cloud.stream.binding.BinderAwareChannelResolver;
 import org.springframework.cloud.stream.function.FunctionConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * @author baihe
@@ -68,16 +94,121 @@ public class EventAgentConfiguration {
         return agentFactory;
     }
 
+    /**
+     * The default lifecycle. With a {@link IBatchEventLifecycle} bean provided, the lifecycle is write-behind: the
+     * records and the status transitions are persisted in batches of {@code scs.event.lifecycle.batch-size} or every
+     * {@code scs.event.lifecycle.flush-interval-ms}, through a queue of {@code scs.event.lifecycle.queue-capacity}
+     * guarded by {@code scs.event.lifecycle.backpressure}: block (default), drop or caller-runs.
+     */
     @Bean
     @ConditionalOnMissingBean
-    public IEventLifecycle eventLifecycle() {
+    public IEventLifecycle eventLifecycle(ObjectProvider<IBatchEventLifecycle> batchLifecycle,
+        @Value("${scs.event.lifecycle.batch-size:200}") int batchSize,
+        @Value("${scs.event.lifecycle.flush-interval-ms:500}") long flushIntervalMillis,
+        @Value("${scs.event.lifecycle.queue-capacity:8192}") int queueCapacity,
+        @Value("${scs.event.lifecycle.backpressure:block}") String backpressure) {
+        IBatchEventLifecycle batchEventLifecycle = batchLifecycle.getIfAvailable();
+        if (null != batchEventLifecycle) {
+            return new BatchingEventLifecycle(batchEventLifecycle, batchSize, flushIntervalMillis, queueCapacity,
+                EventBackpressurePolicy.valueOf(backpressure.trim().toUpperCase().replace('-', '_')));
+        }
         log.warn("*NO* bean of IEventLifecycle provided, use {} ...", DefaultEventLifecycle.class.getName());
         return new DefaultEventLifecycle();
     }
 
+    /**
+     * The event id generator, selected by {@code scs.event.id.generator}: uuid (default), ulid or snowflake.
+     * The snowflake generator requires a node id unique across the producers by {@code scs.event.id.node-id},
+     * for the derived ones may collide and duplicate the event ids.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public EventIdGenerator eventIdGenerator(@Value("${scs.event.id.generator:uuid}") String generator,
+        @Value("${scs.event.id.node-id:-1}") int nodeId) {
+        switch (generator.trim().toLowerCase()) {
+            case "ulid":
+                return new UlidEventIdGenerator();
+            case "snowflake":
+                if (nodeId < 0) {
+                    throw new IllegalStateException("scs.event.id.node-id is required by the snowflake event id generator");
+                }
+                return new SnowflakeEventIdGenerator(nodeId);
+            case "uuid":
+                return new RandomUuidEventIdGenerator();
+            default:
+                throw new IllegalArgumentException("unknown event id generator: " + generator);
+        }
+    }
+
+    /**
+     * The sink of the lifecycle marks and the handler logs. With {@code scs.event.trace.async=true} the traces are
+     * written by a background writer through a ring buffer of {@code scs.event.trace.buffer-size} slots, and
+     * {@code scs.event.trace.sample-rate} or {@code scs.event.trace.sample-rates[<event class>]} samples them per
+     * event class, the failures are always traced.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public EventTraceSink eventTraceSink(@Value("${scs.event.trace.async:false}") boolean async,
+        @Value("${scs.event.trace.buffer-size:8192}") int bufferSize,
+        @Value("${scs.event.trace.sample-rate:1.0}") double sampleRate, Environment environment) {
+        EventTraceSink eventTraceSink = new LoggingEventTraceSink();
+        if (async) {
+            eventTraceSink = new RingBufferEventTraceSink(eventTraceSink, bufferSize);
+        }
+        Map<String, Double> classRates = Binder.get(environment).bind("scs.event.trace.sample-rates",
+            Bindable.mapOf(String.class, Double.class)).orElse(Collections.emptyMap());
+        if (sampleRate < 1.0 || !classRates.isEmpty()) {
+            // sample before the buffer, so the unsampled traces cost no slot
+            eventTraceSink = new SampledEventTraceSink(eventTraceSink, sampleRate, classRates);
+        }
+        return eventTraceSink;
+    }
+
+    /**
+     * The event metrics published to the {@link MeterRegistry} bean, active when micrometer is on the classpath
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class EventMetricsConfiguration {
+
+        /**
+         * The timers publish the client side percentiles of {@code scs.event.metrics.percentiles}, e.g. 0.5,0.99, and
+         * the histograms with {@code scs.event.metrics.percentile-histogram=true}, none by default
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public EventMetrics eventMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${scs.event.metrics.percentiles:}") double[] percentiles,
+            @Value("${scs.event.metrics.percentile-histogram:false}") boolean percentileHistogram) {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            EventMetrics eventMetrics = null == registry ? EventMetrics.NOOP
+                : new MicrometerEventMetrics(registry, percentiles, percentileHistogram);
+            PartitionRouteUtil.setEventMetrics(eventMetrics);
+            return eventMetrics;
+        }
+    }
+
+    /**
+     * The partition selector of the event bindings, selected by {@code scs.event.partition.selector}: modulo (default)
+     * or consistent-hash. The consistent hash one pins the keys in flight when the partition count grows with
+     * {@code scs.event.partition.migration.enabled=true}, until they are idle for
+     * {@code scs.event.partition.migration.drain-ms} or the migration exceeds {@code scs.event.partition.migration.max-ms}.
+     */
     @Bean(name = EVENT_BINDER_PARTITION_SELECTOR_NAME)
-    public BinderPartitionSelector binderPartitionSelector() {
-        return new BinderPartitionSelector();
+    public PartitionSelectorStrategy binderPartitionSelector(
+        @Value("${scs.event.partition.selector:modulo}") String selector,
+        @Value("${scs.event.partition.migration.enabled:false}") boolean migration,
+        @Value("${scs.event.partition.migration.drain-ms:30000}") long drainMillis,
+        @Value("${scs.event.partition.migration.max-ms:600000}") long maxMigrationMillis,
+        @Value("${scs.event.partition.migration.max-keys:100000}") long maxTrackedKeys) {
+        switch (selector.trim().toLowerCase()) {
+            case "consistent-hash":
+                return new ConsistentHashPartitionSelector(migration, drainMillis, maxMigrationMillis, maxTrackedKeys);
+            case "modulo":
+                return new BinderPartitionSelector();
+            default:
+                throw new IllegalArgumentException("unknown event partition selector: " + selector);
+        }
     }
 
     @Bean(name = EVENT_HEADER_PARTITION_KEY_EXTRACTOR_NAME)
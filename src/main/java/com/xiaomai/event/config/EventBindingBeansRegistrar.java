@@ -35,7 +35,11 @@
 package com.xiaomai.event.config;
 
 import com.xiaomai.event.annotation.EnableEventBinding;
+import com.xiaomai.event.annotation.EventHandler;
+import com.xiaomai.event.config.adapter.EventHandlerAnnotationBeanPostProcessor;
+import com.xiaomai.event.enums.EventExecutionMode;
 import com.xiaomai.event.utils.EventBindingUtils;
+import com.xiaomai.event.utils.EventHandlerMethodUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
@@ -50,9 +54,16 @@ import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.type.AnnotationMetadata;
 import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 
 
 /**
@@ -62,6 +73,16 @@ import org.springframework.util.ClassUtils;
 @Slf4j
 public class EventBindingBeansRegistrar implements ImportBeanDefinitionRegistrar, BeanFactoryAware, EnvironmentAware {
 
+    /**
+     * The name of the property source of the consumer defaults derived from the event handlers
+     */
+    public static final String CONSUMER_DEFAULTS_PROPERTY_SOURCE_NAME = "scsEventConsumerDefaults";
+
+    /**
+     * The prefix of the kafka consumer configuration of the binding
+     */
+    private static final String KAFKA_BINDING_PREFIX = "spring.cloud.stream.kafka.bindings.";
+
     /**
      * The bean factory to retrieve bean
      */
@@ -93,12 +114,65 @@ public class EventBindingBeansRegistrar implements ImportBeanDefinitionRegistrar
             enableEventBinding.produce(), enableEventBinding.listenerClass(),
             registry, ClassUtils.resolveClassName(metadata.getClassName(), null));
 
+        registerConsumerDefaults(enableEventBinding.listenerClass());
+
         //*IMPORTANT* replace the original BindingServiceProperties with {@link EventBindingServiceProperties}
         registry.removeBeanDefinition("spring.cloud.stream-" + BindingServiceProperties.class.getName());
         registry.removeBeanDefinition(IntegrationContextUtils.MESSAGE_HANDLER_FACTORY_BEAN_NAME);
         registry.removeBeanDefinition("messageConverterConfigurer");
     }
 
+    /**
+     * Derive the kafka consumer configuration of the event handlers, the property source is
+     * added with the *LOWEST* precedence so the explicit configuration wins
+     * <ul>
+     *     <li>the batch handlers bound the batch with max.poll.records and fetch.max.wait.ms</li>
+     *     <li>the lane, asynchronous and virtual thread handlers acknowledge the offsets manually</li>
+     * </ul>
+     * @param listenerClasses the event listener classes
+     */
+    private void registerConsumerDefaults(Class<?>[] listenerClasses) {
+        if (null == environment) {
+            return;
+        }
+        Map<String, Object> consumerDefaults = new HashMap<>();
+        for (Class<?> listenerClass : listenerClasses) {
+            for (Method method : ReflectionUtils.getUniqueDeclaredMethods(listenerClass)) {
+                EventHandler eventHandler = method.getDeclaredAnnotation(EventHandler.class);
+                if (null == eventHandler) {
+                    continue;
+                }
+                boolean manualAck = eventHandler.lanes() > 1
+                    || EventHandlerMethodUtils.isAsyncReturnType(method.getReturnType())
+                    || eventHandler.executionMode().resolve(environment.getProperty(
+                        EventHandlerAnnotationBeanPostProcessor.EXECUTION_MODE_PROPERTY)) == EventExecutionMode.VIRTUAL_THREAD;
+                if (eventHandler.batchSize() <= 1 && !manualAck) {
+                    continue;
+                }
+                String simpleBindingName = EventBindingUtils.resolveInputBindingName(eventHandler.value());
+                String[] channels = eventHandler.channels().length > 0 ? eventHandler.channels() : new String[] {null};
+                for (String channel : channels) {
+                    if (null != channel && !StringUtils.hasText(channel)) {
+                        continue;
+                    }
+                    String prefix = KAFKA_BINDING_PREFIX
+                        + EventBindingUtils.composeEventChannelBeanName(simpleBindingName, channel) + ".consumer.";
+                    if (eventHandler.batchSize() > 1) {
+                        consumerDefaults.put(prefix + "configuration.max.poll.records", String.valueOf(eventHandler.batchSize()));
+                        consumerDefaults.put(prefix + "configuration.fetch.max.wait.ms", String.valueOf(eventHandler.batchTimeoutMs()));
+                    }
+                    if (manualAck) {
+                        consumerDefaults.put(prefix + "autoCommitOffset", "false");
+                    }
+                }
+            }
+        }
+        if (!consumerDefaults.isEmpty() && !environment.getPropertySources().contains(CONSUMER_DEFAULTS_PROPERTY_SOURCE_NAME)) {
+            environment.getPropertySources().addLast(new MapPropertySource(CONSUMER_DEFAULTS_PROPERTY_SOURCE_NAME, consumerDefaults));
+            log.info("Registered the consumer defaults of the event handlers: {}", consumerDefaults);
+        }
+    }
+
     /**
      * Init the bean factory
      * @param beanFactory the given bean factory
@@ -37,14 +37,20 @@ package com.xiaomai.event.config;
 import com.xiaomai.event.config.adapter.EventConverterConfigurer;
 import com.xiaomai.event.config.adapter.EventHandlerAnnotationBeanPostProcessor;
 import com.xiaomai.event.config.adapter.EventHandlerMethodFactory;
+import com.xiaomai.event.config.adapter.EventPartitionRebalanceListener;
+import com.xiaomai.event.dedup.EventDedupStore;
+import com.xiaomai.event.dedup.MemoryEventDedupStore;
 import com.xiaomai.event.lifecycle.IEventLifecycle;
 import com.xiaomai.event.partition.kafka.KafkaTopicPartitionRefreshJob;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.binder.*;
 import org.springframework.cloud.stream.binder.DefaultBinderFactory.Listener;
@@ -109,10 +115,27 @@ public class EventBindingConfiguration {
         return new EventConverterConfigurer(eventBindingServiceProperties, compositeMessageConverter);
     }
 
+    /**
+     * The job refreshing the partition counts of the kafka topics every {@code scs.event.partition.refresh-interval}
+     * seconds, 0 to refresh at startup only. The changed counts are applied to the partition handlers at once.
+     */
     @Bean
     @ConditionalOnClass(AdminClient.class)
-    public KafkaTopicPartitionRefreshJob kafkaTopicPartitionRefreshJob(EventBindingServiceProperties eventBindingServiceProperties) {
-        return new KafkaTopicPartitionRefreshJob(eventBindingServiceProperties, 0);
+    public KafkaTopicPartitionRefreshJob kafkaTopicPartitionRefreshJob(EventBindingServiceProperties eventBindingServiceProperties,
+        @Value("${scs.event.partition.refresh-interval:60}") int refreshInterval) {
+        return new KafkaTopicPartitionRefreshJob(eventBindingServiceProperties, refreshInterval);
+    }
+
+    /**
+     * The in-memory store suppressing the redelivered events, enabled by {@code scs.event.dedup.enabled=true}.
+     * Each generation remembers up to {@code scs.event.dedup.capacity} event ids for {@code scs.event.dedup.window-ms}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "scs.event.dedup.enabled", havingValue = "true")
+    public EventDedupStore eventDedupStore(@Value("${scs.event.dedup.capacity:131072}") int capacity,
+        @Value("${scs.event.dedup.window-ms:600000}") long windowMillis) {
+        return new MemoryEventDedupStore(capacity, windowMillis);
     }
 
     @Bean(name = EVENT_HANDLER_ANNOTATION_BEAN_POST_PROCESSOR_NAME)
@@ -120,6 +143,17 @@ public class EventBindingConfiguration {
         return new EventHandlerAnnotationBeanPostProcessor();
     }
 
+    /**
+     * The rebalance listener revoking the partitions from the key sharded lanes, active with the kafka binder
+     */
+    @Bean
+    @ConditionalOnClass(name = "org.springframework.cloud.stream.binder.kafka.KafkaBindingRebalanceListener")
+    @ConditionalOnMissingBean(type = "org.springframework.cloud.stream.binder.kafka.KafkaBindingRebalanceListener")
+    public EventPartitionRebalanceListener eventPartitionRebalanceListener(
+        @Qualifier(EVENT_HANDLER_ANNOTATION_BEAN_POST_PROCESSOR_NAME) EventHandlerAnnotationBeanPostProcessor eventHandlerAnnotationBeanPostProcessor) {
+        return new EventPartitionRebalanceListener(eventHandlerAnnotationBeanPostProcessor);
+    }
+
     @Bean(name = EVENT_HANDLER_FACTORY_BEAN_NAME)
     public static MessageHandlerMethodFactory messageHandlerMethodFactory(
         @Qualifier(IntegrationContextUtils.ARGUMENT_RESOLVER_MESSAGE_CONVERTER_BEAN_NAME) CompositeMessageConverter compositeMessageConverter,
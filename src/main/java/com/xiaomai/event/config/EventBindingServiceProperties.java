@@ -112,7 +112,15 @@ public class EventBindingServiceProperties extends BindingServiceProperties {
                 }
                 // initialize the consumer properties
                 ConsumerProperties consumerProperties = bindingProperties.getConsumer();
+                if (null == consumerProperties && eventHandler.batchSize() > 1) {
+                    consumerProperties = new ConsumerProperties();
+                    bindingProperties.setConsumer(consumerProperties);
+                }
                 if (null != consumerProperties) {
+                    if (eventHandler.batchSize() > 1) {
+                        // the binder polls the events in batch, the size is bound by the binder specific property
+                        consumerProperties.setBatchMode(true);
+                    }
                     if (eventHandler.concurrency() > 1) {
                         consumerProperties.setConcurrency(eventHandler.concurrency());
                     }
@@ -0,0 +1,284 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.config.adapter;
+
+import com.xiaomai.event.EventBatchFailedException;
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.dedup.EventDedupStore;
+import com.xiaomai.event.lifecycle.IEventLifecycle;
+import com.xiaomai.event.metrics.EventMetrics;
+import com.xiaomai.event.trace.EventTracePhase;
+import com.xiaomai.event.utils.EventClassDescriptor;
+import com.xiaomai.event.utils.EventHandlerMethodUtils;
+import com.xiaomai.event.utils.StructuredArguments;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.SmartMessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The handler method consuming a batch of events, e.g. {@code void handle(List<MyEvent> events)}.
+ * The batch is split into the event messages by the per record headers of the binder, the
+ * lifecycle is called with the batch callbacks, and the failures are reported per event.
+ */
+@Slf4j
+public class BatchEventHandlerMethod extends EventHandlerMethod {
+
+    /**
+     * The header of the per record headers of a batch, populated by the kafka binder
+     */
+    static final String BATCH_CONVERTED_HEADERS = "kafka_batchConvertedHeaders";
+
+    private final Class<?> eventPayloadClass;
+
+    private final String eventName;
+
+    private final MethodParameter batchParameter;
+
+    private final Class<?> elementClass;
+
+    private final MessageConverter messageConverter;
+
+    public BatchEventHandlerMethod(Object bean, Method method, IEventLifecycle eventLifecycle, String customerKey,
+        Class<?> eventPayloadClass, MessageConverter messageConverter) {
+        super(bean, method, eventLifecycle, customerKey);
+        EventHandlerMethodUtils.validateBatchEventHandlerMethod(method);
+        this.eventPayloadClass = eventPayloadClass;
+        this.eventName = EventClassDescriptor.of(eventPayloadClass).getEventName();
+        this.batchParameter = new MethodParameter(method, 0);
+        Class<?> elementClass = ResolvableType.forMethodParameter(batchParameter).asCollection().resolveGeneric(0);
+        this.elementClass = null != elementClass ? elementClass : eventPayloadClass;
+        this.messageConverter = messageConverter;
+    }
+
+    @Override
+    public Object invoke(Message<?> message, Object... providedArgs) throws Exception {
+        long batchExecuteStart = System.currentTimeMillis();
+        IEventLifecycle eventLifecycle = getEventLifecycle();
+        EventDedupStore eventDedupStore = getEventDedupStore();
+        EventMetrics eventMetrics = getEventMetrics();
+
+        List<BatchEvent> events = new ArrayList<>();
+        List<String> trackedSeqs = new ArrayList<>();
+        for (Message<?> eventMessage : splitBatch(message)) {
+            BatchEvent event = new BatchEvent(eventMessage);
+            if (event.isTracked()) {
+                trace(EventTracePhase.RECEIVED, event, batchExecuteStart, batchExecuteStart, null);
+                if (event.eventTriggerTime > 0) {
+                    eventMetrics.recordLag(eventName, getCustomerKey(), batchExecuteStart - event.eventTriggerTime);
+                }
+                // check before the lifecycle and the payload conversion as the single event handler does
+                if (null != eventDedupStore && eventDedupStore.isDuplicate(event.eventSeq, getDedupKey())) {
+                    trace(EventTracePhase.DUPLICATE, event, batchExecuteStart, batchExecuteStart, null);
+                    eventMetrics.recordExecution(eventName, getCustomerKey(), EventMetrics.OUTCOME_DUPLICATE, 0L);
+                    continue;
+                }
+                trackedSeqs.add(event.eventSeq);
+            }
+            events.add(event);
+        }
+
+        // check the events to execute in one lifecycle callback
+        boolean[] needExecs = trackedSeqs.isEmpty() ? new boolean[0] :
+            eventLifecycle.onExecuteBatch(trackedSeqs, getCustomerKey(), eventPayloadClass);
+        Assert.state(null != needExecs && needExecs.length == trackedSeqs.size(), () -> "onExecuteBatch of "
+            + eventLifecycle.getClass().getName() + " must return one flag per event, expected " + trackedSeqs.size()
+            + " but got " + (null == needExecs ? null : needExecs.length));
+
+        List<Object> payloads = new ArrayList<>(events.size());
+        List<BatchEvent> payloadEvents = new ArrayList<>(events.size());
+        for (int i = 0, tracked = 0; i < events.size(); i++) {
+            BatchEvent event = events.get(i);
+            // the messages which are not events are always executed
+            if (event.isTracked() && !needExecs[tracked++]) {
+                eventMetrics.recordExecution(eventName, getCustomerKey(), EventMetrics.OUTCOME_SKIPPED,
+                    System.currentTimeMillis() - batchExecuteStart);
+                continue;
+            }
+            try {
+                payloads.add(convertPayload(event.message));
+                payloadEvents.add(event);
+            } catch (Exception e) {
+                fail(event, batchExecuteStart, e);
+            }
+        }
+        if (payloads.isEmpty()) {
+            return null;
+        }
+
+        Map<Integer, Exception> failures = Collections.emptyMap();
+        Object eventResult;
+        try {
+            eventResult = doInvoke((Object) payloads);
+        } catch (EventBatchFailedException e) {
+            failures = e.getFailures();
+            eventResult = null;
+        } catch (Exception e) {
+            for (BatchEvent event : payloadEvents) {
+                fail(event, batchExecuteStart, e);
+            }
+            return null;
+        }
+
+        long batchExecuteEnd = System.currentTimeMillis();
+        List<String> succeededSeqs = new ArrayList<>(payloadEvents.size());
+        for (int i = 0; i < payloadEvents.size(); i++) {
+            BatchEvent event = payloadEvents.get(i);
+            Exception failure = failures.get(i);
+            if (null != failure) {
+                fail(event, batchExecuteStart, failure);
+            } else if (event.isTracked()) {
+                trace(EventTracePhase.HANDLED, event, batchExecuteStart, batchExecuteEnd, null);
+                eventMetrics.recordExecution(eventName, getCustomerKey(), EventMetrics.OUTCOME_SUCCESS,
+                    batchExecuteEnd - batchExecuteStart);
+                succeededSeqs.add(event.eventSeq);
+            }
+        }
+
+        if (!succeededSeqs.isEmpty()) {
+            if (null != eventDedupStore) {
+                for (String eventSeq : succeededSeqs) {
+                    eventDedupStore.markConsumed(eventSeq, getDedupKey());
+                }
+            }
+            eventLifecycle.onSuccessBatch(succeededSeqs, getCustomerKey(), eventPayloadClass);
+        }
+        return eventResult;
+    }
+
+    /**
+     * Split the batch message into the event messages with the per record headers
+     * @param message the batch message
+     * @return the event messages
+     */
+    @SuppressWarnings("unchecked")
+    private List<Message<?>> splitBatch(Message<?> message) {
+        Object payload = message.getPayload();
+        if (!(payload instanceof List)) {
+            // the binder does not deliver the batch, consume the event as a batch of one
+            return Collections.singletonList(message);
+        }
+        List<?> elements = (List<?>) payload;
+        Object batchHeaders = message.getHeaders().get(BATCH_CONVERTED_HEADERS);
+        List<?> elementHeaders = batchHeaders instanceof List && ((List<?>) batchHeaders).size() == elements.size() ?
+            (List<?>) batchHeaders : null;
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+
+        List<Message<?>> eventMessages = new ArrayList<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            MessageBuilder<?> builder = MessageBuilder.withPayload(elements.get(i));
+            if (null != elementHeaders) {
+                builder.copyHeaders((Map<String, ?>) elementHeaders.get(i));
+            } else {
+                builder.copyHeaders(message.getHeaders());
+            }
+            if (null != contentType) {
+                builder.setHeaderIfAbsent(MessageHeaders.CONTENT_TYPE, contentType);
+            }
+            eventMessages.add(builder.build());
+        }
+        return eventMessages;
+    }
+
+    /**
+     * Convert the payload of the event message to the element type of the batch
+     * @param eventMessage the event message
+     * @return the converted payload
+     */
+    private Object convertPayload(Message<?> eventMessage) {
+        Object payload = eventMessage.getPayload();
+        if (elementClass.isInstance(payload)) {
+            return payload;
+        }
+        Object converted = messageConverter instanceof SmartMessageConverter ?
+            ((SmartMessageConverter) messageConverter).fromMessage(eventMessage, elementClass, batchParameter.nested()) :
+            messageConverter.fromMessage(eventMessage, elementClass);
+        if (null == converted) {
+            throw new MessageConversionException(eventMessage, "Cannot convert from ["
+                + payload.getClass().getName() + "] to [" + elementClass.getName() + "]");
+        }
+        return converted;
+    }
+
+    private void fail(BatchEvent event, long batchExecuteStart, Exception e) {
+        if (!event.isTracked()) {
+            log.error("Message handling failed in batch! {}",
+                StructuredArguments.keyValue("method", getMethodName()), e);
+            return;
+        }
+        long eventExecuteEnd = System.currentTimeMillis();
+        trace(EventTracePhase.HANDLE_FAILED, event, batchExecuteStart, eventExecuteEnd, e);
+        getEventMetrics().recordExecution(eventName, getCustomerKey(), EventMetrics.OUTCOME_FAILURE,
+            eventExecuteEnd - batchExecuteStart);
+        getEventLifecycle().onFail(event.eventSeq, getCustomerKey(), eventPayloadClass, e);
+    }
+
+    private void trace(EventTracePhase phase, BatchEvent event, long startTime, long endTime, Exception e) {
+        getEventTraceSink().record(phase, event.eventSeq, event.eventKey, eventPayloadClass, getMethodName(),
+            event.producer, event.eventTriggerTime, startTime, endTime, e);
+    }
+
+    /**
+     * An event message of the batch with its decoded headers
+     */
+    private static final class BatchEvent {
+
+        private final Message<?> message;
+
+        private final String eventSeq;
+
+        private final String eventKey;
+
+        /**
+         * The trigger time, 0 if not known
+         */
+        private final long eventTriggerTime;
+
+        private final String producer;
+
+        BatchEvent(Message<?> message) {
+            MessageHeaders messageHeaders = message.getHeaders();
+            Long eventTriggerTime = getLongFromHeader(messageHeaders, EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey());
+            this.message = message;
+            this.eventSeq = getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_ID.getKey());
+            this.eventKey = getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_KEY.getKey());
+            this.eventTriggerTime = null != eventTriggerTime ? eventTriggerTime : 0L;
+            this.producer = getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_TRIGGER_APP.getKey());
+        }
+
+        /**
+         * @return true if the message is an event, tracked by the lifecycle
+         */
+        boolean isTracked() {
+            return StringUtils.hasText(eventSeq);
+        }
+    }
+}
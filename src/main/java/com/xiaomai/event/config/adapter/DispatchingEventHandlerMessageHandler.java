@@ -17,33 +17,95 @@
 
 package com.xiaomai.event.config.adapter;
 
+import com.xiaomai.event.EventFanOutFailedException;
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.executor.EventCompletion;
+import com.xiaomai.event.utils.EventClassCache;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * An {@link AbstractReplyProducingMessageHandler} that delegates to a collection of
  * internal {@link ConditionalStreamListenerMessageHandlerWrapper} instances, executing the ones that
  * match the given expression.
+ * <p>
+ * The header equality conditions, e.g. {@code headers['type']=='X'}, are not evaluated but
+ * looked up in a hash index from the header value to the handlers, so the dispatch cost stays
+ * flat as the conditional handlers grow. If all the conditions are such equalities on the same
+ * header, the matching handlers of each value are precomputed.
+ * <p>
+ * With the parallel fan-out the matching handlers run concurrently in the fan-out executor,
+ * and the dispatcher returns once all of them, or the quorum, complete, so one slow handler
+ * does not delay the others.
  *
  * @author Marius Bogoevici
  * @since 1.2
  */
 final class DispatchingEventHandlerMessageHandler extends AbstractReplyProducingMessageHandler {
 
+	/**
+	 * {@code headers['name'] == 'value'} or {@code 'value' == headers['name']}
+	 */
+	private static final Pattern HEADER_EQUALITY = Pattern.compile(
+			"\\s*(?:headers\\s*\\[\\s*'([^']+)'\\s*]\\s*(?:==|\\beq\\b)\\s*'([^']*)'"
+					+ "|'([^']*)'\\s*(?:==|\\beq\\b)\\s*headers\\s*\\[\\s*'([^']+)'\\s*])\\s*");
+
 	private final List<ConditionalStreamListenerMessageHandlerWrapper> handlerMethods;
 
 	private final boolean evaluateExpressions;
 
 	private final EvaluationContext evaluationContext;
 
+	/**
+	 * The handler positions of each header value, by the header name
+	 */
+	private final Map<String, Map<String, int[]>> headerIndex = new LinkedHashMap<>();
+
+	/**
+	 * The handlers not in the header index, i.e. unconditional or evaluated, by the position
+	 */
+	private final ConditionalStreamListenerMessageHandlerWrapper[] unindexedHandlers;
+
+	/**
+	 * The header of the precomputed routes, null if the conditions must be evaluated
+	 */
+	private final String routeHeader;
+
+	private final Map<String, List<ConditionalStreamListenerMessageHandlerWrapper>> routes = new HashMap<>();
+
+	private final List<ConditionalStreamListenerMessageHandlerWrapper> defaultRoute;
+
+	/**
+	 * The executor of the parallel fan-out, null to run the matching handlers in sequence
+	 */
+	private Executor fanOutExecutor;
+
+	/**
+	 * The count of the handlers to complete before return, all of them if not positive
+	 */
+	private int fanOutQuorum;
+
 	DispatchingEventHandlerMessageHandler(Collection<ConditionalStreamListenerMessageHandlerWrapper> handlerMethods,
 										  EvaluationContext evaluationContext) {
 		Assert.notEmpty(handlerMethods, "'handlerMethods' cannot be empty");
@@ -60,6 +122,57 @@ final class DispatchingEventHandlerMessageHandler extends AbstractReplyProducing
 			Assert.notNull(evaluationContext, "'evaluationContext' cannot be null if conditions are used");
 		}
 		this.evaluationContext = evaluationContext;
+
+		this.unindexedHandlers = new ConditionalStreamListenerMessageHandlerWrapper[this.handlerMethods.size()];
+		boolean evaluated = false;
+		Map<String, Map<String, List<Integer>>> positions = new LinkedHashMap<>();
+		for (int i = 0; i < this.handlerMethods.size(); i++) {
+			ConditionalStreamListenerMessageHandlerWrapper handlerMethod = this.handlerMethods.get(i);
+			Matcher matcher = null == handlerMethod.getCondition() ? null
+					: HEADER_EQUALITY.matcher(handlerMethod.getCondition().getExpressionString());
+			if (null != matcher && matcher.matches()) {
+				String header = null != matcher.group(1) ? matcher.group(1) : matcher.group(4);
+				String value = null != matcher.group(1) ? matcher.group(2) : matcher.group(3);
+				positions.computeIfAbsent(header, h -> new HashMap<>()).computeIfAbsent(value, v -> new ArrayList<>()).add(i);
+			}
+			else {
+				this.unindexedHandlers[i] = handlerMethod;
+				evaluated |= null != handlerMethod.getCondition();
+			}
+		}
+		positions.forEach((header, values) -> {
+			Map<String, int[]> valueIndex = new HashMap<>();
+			values.forEach((value, list) -> valueIndex.put(value, list.stream().mapToInt(Integer::intValue).toArray()));
+			this.headerIndex.put(header, valueIndex);
+		});
+
+		List<ConditionalStreamListenerMessageHandlerWrapper> unconditional = new ArrayList<>();
+		for (ConditionalStreamListenerMessageHandlerWrapper handlerMethod : this.unindexedHandlers) {
+			if (null != handlerMethod) {
+				unconditional.add(handlerMethod);
+			}
+		}
+		this.defaultRoute = Collections.unmodifiableList(unconditional);
+		if (!evaluated && this.headerIndex.size() == 1) {
+			this.routeHeader = this.headerIndex.keySet().iterator().next();
+			this.headerIndex.get(this.routeHeader).forEach((value, indexed) ->
+					this.routes.put(value, Collections.unmodifiableList(collect(indexed, null))));
+		}
+		else {
+			this.routeHeader = null;
+		}
+	}
+
+	/**
+	 * Run the matching handlers in parallel. The fan-out waits for the asynchronous parts of the
+	 * handlers as well, so with the asynchronous handler methods the binder thread is held for
+	 * their whole IO time, the same as executing them synchronously.
+	 * @param fanOutExecutor the executor of the handlers
+	 * @param fanOutQuorum the count of the handlers to complete before return, all of them if not positive
+	 */
+	void setParallelFanOut(Executor fanOutExecutor, int fanOutQuorum) {
+		this.fanOutExecutor = fanOutExecutor;
+		this.fanOutQuorum = fanOutQuorum;
 	}
 
 	@Override
@@ -77,6 +190,10 @@ final class DispatchingEventHandlerMessageHandler extends AbstractReplyProducing
 			}
 			return null;
 		}
+		else if (matchingHandlers.size() > 1 && null != this.fanOutExecutor) {
+			fanOut(requestMessage, matchingHandlers);
+			return null;
+		}
 		else if (matchingHandlers.size() > 1) {
 			for (ConditionalStreamListenerMessageHandlerWrapper matchingMethod : matchingHandlers) {
 				matchingMethod.getStreamListenerMessageHandler().handleMessage(requestMessage);
@@ -90,23 +207,140 @@ final class DispatchingEventHandlerMessageHandler extends AbstractReplyProducing
 		}
 	}
 
+	/**
+	 * Run the matching handlers in the fan-out executor and wait for the quorum, the completion
+	 * of a handler includes its asynchronous parts, which hold the binder thread until then. The
+	 * failures of the events are reported to the lifecycle of each handler and not rethrown, so
+	 * the binder does not redeliver the event to the handlers succeeded. The failures of the
+	 * messages which are not events have no lifecycle, those before the quorum are rethrown
+	 * together and redelivered to all the handlers as the sequential dispatch does.
+	 * @param message the message
+	 * @param matchingHandlers the matching handlers
+	 */
+	private void fanOut(Message<?> message, List<ConditionalStreamListenerMessageHandlerWrapper> matchingHandlers) {
+		int quorum = this.fanOutQuorum > 0 ? Math.min(this.fanOutQuorum, matchingHandlers.size()) : matchingHandlers.size();
+		CountDownLatch completed = new CountDownLatch(quorum);
+		Map<String, Exception> failures = new ConcurrentHashMap<>();
+		for (ConditionalStreamListenerMessageHandlerWrapper matchingMethod : matchingHandlers) {
+			EventHandlerMessageHandler handler = matchingMethod.getStreamListenerMessageHandler();
+			Runnable task = () -> new EventCompletion(completed::countDown).run(() -> {
+				try {
+					handler.handleMessage(message);
+				}
+				catch (Exception e) {
+					Exception cause = e instanceof MessagingException && e.getCause() instanceof Exception
+							? (Exception) e.getCause() : e;
+					if (!reportFailure(message, handler, cause)) {
+						failures.put(getHandlerKey(handler), cause);
+					}
+				}
+			});
+			try {
+				this.fanOutExecutor.execute(task);
+			}
+			catch (RejectedExecutionException e) {
+				// the executor is shutting down, run in the caller
+				task.run();
+			}
+		}
+		try {
+			completed.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException(message, "Interrupted while waiting for the fan-out", e);
+		}
+		if (!failures.isEmpty()) {
+			throw new EventFanOutFailedException(failures);
+		}
+	}
+
+	/**
+	 * The key of the handler in the fan-out failures, distinct per handler method for the
+	 * consumer key is shared by all the handlers of the application
+	 */
+	private static String getHandlerKey(EventHandlerMessageHandler handler) {
+		return handler.getInvocableHandlerMethod().getShortLogMessage();
+	}
+
+	/**
+	 * Report the failure escaped from the handler to its lifecycle, the failures of the handler
+	 * methods are reported by themselves
+	 * @return true if reported, false if the message is not an event of the handler
+	 */
+	private static boolean reportFailure(Message<?> message, EventHandlerMessageHandler handler, Exception e) {
+		MessageHeaders headers = message.getHeaders();
+		String eventSeq = EventHandlerMethod.getStringFromHeader(headers, EventBuiltinAttr.EVENT_ID.getKey());
+		InvocableHandlerMethod method = handler.getInvocableHandlerMethod();
+		if (!StringUtils.hasText(eventSeq) || !(method instanceof EventHandlerMethod)) {
+			return false;
+		}
+		EventHandlerMethod eventHandlerMethod = (EventHandlerMethod) method;
+		eventHandlerMethod.getEventLifecycle().onFail(eventSeq, eventHandlerMethod.getCustomerKey(),
+				EventClassCache.resolve(headers.get(EventBuiltinAttr.EVENT_CLASS.getKey())), e);
+		return true;
+	}
+
 	private List<ConditionalStreamListenerMessageHandlerWrapper> findMatchingHandlers(Message<?> message) {
-		ArrayList<ConditionalStreamListenerMessageHandlerWrapper> matchingMethods = new ArrayList<>();
-		for (ConditionalStreamListenerMessageHandlerWrapper conditionalStreamListenerMessageHandlerWrapperMethod : this.handlerMethods) {
-			if (conditionalStreamListenerMessageHandlerWrapperMethod.getCondition() == null) {
-				matchingMethods.add(conditionalStreamListenerMessageHandlerWrapperMethod);
+		if (null != this.routeHeader) {
+			Object value = message.getHeaders().get(this.routeHeader);
+			List<ConditionalStreamListenerMessageHandlerWrapper> route = value instanceof String ? this.routes.get(value) : null;
+			return null != route ? route : this.defaultRoute;
+		}
+		int[] indexed = null;
+		for (Map.Entry<String, Map<String, int[]>> entry : this.headerIndex.entrySet()) {
+			// the same as the evaluation of the equality, which only matches the string values
+			Object value = message.getHeaders().get(entry.getKey());
+			int[] matched = value instanceof String ? entry.getValue().get(value) : null;
+			if (null != matched) {
+				indexed = null == indexed ? matched : merge(indexed, matched);
 			}
-			else {
-				boolean conditionMetOnMessage = conditionalStreamListenerMessageHandlerWrapperMethod.getCondition().getValue(
+		}
+		return collect(null != indexed ? indexed : new int[0], message);
+	}
+
+	/**
+	 * Collect the handlers of the indexed positions and the unindexed handlers matching the
+	 * message, in the declared order
+	 * @param indexed the sorted positions of the indexed handlers matched
+	 * @param message the message to evaluate the conditions, null to skip the conditional handlers
+	 * @return the matching handlers
+	 */
+	private List<ConditionalStreamListenerMessageHandlerWrapper> collect(int[] indexed, Message<?> message) {
+		List<ConditionalStreamListenerMessageHandlerWrapper> matchingMethods = new ArrayList<>();
+		int next = 0;
+		for (int i = 0; i < this.unindexedHandlers.length; i++) {
+			ConditionalStreamListenerMessageHandlerWrapper handlerMethod = this.unindexedHandlers[i];
+			if (next < indexed.length && indexed[next] == i) {
+				matchingMethods.add(this.handlerMethods.get(i));
+				next++;
+			}
+			else if (null == handlerMethod) {
+				continue;
+			}
+			else if (handlerMethod.getCondition() == null) {
+				matchingMethods.add(handlerMethod);
+			}
+			else if (null != message) {
+				boolean conditionMetOnMessage = handlerMethod.getCondition().getValue(
 						this.evaluationContext, message, Boolean.class);
 				if (conditionMetOnMessage) {
-					matchingMethods.add(conditionalStreamListenerMessageHandlerWrapperMethod);
+					matchingMethods.add(handlerMethod);
 				}
 			}
 		}
 		return matchingMethods;
 	}
 
+	private static int[] merge(int[] left, int[] right) {
+		int[] merged = new int[left.length + right.length];
+		int i = 0, j = 0, k = 0;
+		while (i < left.length || j < right.length) {
+			merged[k++] = j >= right.length || (i < left.length && left[i] < right[j]) ? left[i++] : right[j++];
+		}
+		return merged;
+	}
+
 	static class ConditionalStreamListenerMessageHandlerWrapper {
 
 		private final Expression condition;
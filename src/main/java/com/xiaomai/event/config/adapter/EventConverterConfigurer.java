@@ -1,13 +1,17 @@
 package com.xiaomai.event.config.adapter;
 
 import com.xiaomai.event.config.EventBindingServiceProperties;
+import com.xiaomai.event.constant.EventBuiltinAttr;
 import com.xiaomai.event.partition.BinderPartitionHandler;
 import com.xiaomai.event.partition.EventPartitionHandler;
+import com.xiaomai.event.partition.PartitionRoute;
+import com.xiaomai.event.partition.StickyPartitioner;
 import com.xiaomai.event.utils.EventBindingUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.cloud.stream.binder.*;
 import org.springframework.cloud.stream.binding.MessageConverterConfigurer;
@@ -15,6 +19,7 @@ import org.springframework.cloud.stream.config.BindingProperties;
 import org.springframework.cloud.stream.converter.CompositeMessageConverterFactory;
 import org.springframework.integration.channel.AbstractMessageChannel;
 import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
 import org.springframework.integration.support.MessageBuilderFactory;
 import org.springframework.integration.support.MutableMessageBuilderFactory;
 import org.springframework.messaging.Message;
@@ -41,6 +46,18 @@ public class EventConverterConfigurer extends MessageConverterConfigurer {
 
   private final MessageBuilderFactory messageBuilderFactory = new MutableMessageBuilderFactory();
 
+  /**
+   * The max count of the unkeyed events sent to a partition before the sticky partitioner rotates
+   */
+  @Value("${scs.event.partition.sticky.batch-size:" + StickyPartitioner.DEFAULT_BATCH_SIZE + "}")
+  private int stickyBatchSize = StickyPartitioner.DEFAULT_BATCH_SIZE;
+
+  /**
+   * The max time in milliseconds the sticky partitioner sticks to a partition
+   */
+  @Value("${scs.event.partition.sticky.linger-ms:" + StickyPartitioner.DEFAULT_LINGER_MS + "}")
+  private long stickyLingerMs = StickyPartitioner.DEFAULT_LINGER_MS;
+
   public EventConverterConfigurer(EventBindingServiceProperties bindingServiceProperties,
      CompositeMessageConverter compositeMessageConverter) {
     super(bindingServiceProperties, compositeMessageConverter);
@@ -62,6 +79,7 @@ public class EventConverterConfigurer extends MessageConverterConfigurer {
     if (null != eventPayloadClass) {
       AbstractMessageChannel messageChannel = (AbstractMessageChannel) channel;
       List<ChannelInterceptor> channelInterceptors = messageChannel.getChannelInterceptors();
+      boolean partitioned = false;
       if (!CollectionUtils.isEmpty(channelInterceptors)) {
         ChannelInterceptor toReplaceInterceptor = null;
         for (ChannelInterceptor checkInterceptor: channelInterceptors) {
@@ -81,8 +99,38 @@ public class EventConverterConfigurer extends MessageConverterConfigurer {
           PartitioningInterceptor partitioningInterceptor = new PartitioningInterceptor(destination,
             bindingProperties);
           messageChannel.addInterceptor(0, partitioningInterceptor);
+          partitioned = true;
         }
       }
+      if (!partitioned) {
+        // the partition route is not consumed by any partitioner, encode it before sending to the binder
+        messageChannel.addInterceptor(0, new EventKeyEncodingInterceptor());
+      }
+    }
+  }
+
+  /**
+   * Replace the {@link PartitionRoute} event key header with its compact wire form
+   * @param builder the builder of the message to send
+   * @param message the message to send
+   * @return the builder
+   */
+  private static AbstractIntegrationMessageBuilder<?> encodeEventKey(AbstractIntegrationMessageBuilder<?> builder,
+                                                                    Message<?> message) {
+    Object eventKey = message.getHeaders().get(EventBuiltinAttr.EVENT_KEY.getKey());
+    if (eventKey instanceof PartitionRoute) {
+      builder.setHeader(EventBuiltinAttr.EVENT_KEY.getKey(), ((PartitionRoute) eventKey).toWireForm());
+    }
+    return builder;
+  }
+
+  public final class EventKeyEncodingInterceptor implements ChannelInterceptor {
+
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+      if (!(message.getHeaders().get(EventBuiltinAttr.EVENT_KEY.getKey()) instanceof PartitionRoute)) {
+        return message;
+      }
+      return encodeEventKey(EventConverterConfigurer.this.messageBuilderFactory.fromMessage(message), message).build();
     }
   }
 
@@ -95,7 +143,9 @@ public class EventConverterConfigurer extends MessageConverterConfigurer {
       this.partitionHandler =
           new EventPartitionHandler(destination, ExpressionUtils.createStandardEvaluationContext(
               EventConverterConfigurer.this.beanFactory),
-              this.bindingProperties.getProducer(), EventConverterConfigurer.this.beanFactory);
+              this.bindingProperties.getProducer(), EventConverterConfigurer.this.beanFactory,
+              new StickyPartitioner(EventConverterConfigurer.this.stickyBatchSize,
+                  EventConverterConfigurer.this.stickyLingerMs));
     }
 
     public void setPartitionCount(int partitionCount) {
@@ -105,9 +155,9 @@ public class EventConverterConfigurer extends MessageConverterConfigurer {
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
       if (!message.getHeaders().containsKey("scst_partitionOverride")) {
         int partition = this.partitionHandler.determinePartition(message);
-        return EventConverterConfigurer.this.messageBuilderFactory.fromMessage(message).setHeader("scst_partition", partition).build();
+        return encodeEventKey(EventConverterConfigurer.this.messageBuilderFactory.fromMessage(message), message).setHeader("scst_partition", partition).build();
       } else {
-        return EventConverterConfigurer.this.messageBuilderFactory.fromMessage(message).setHeader("scst_partition", message.getHeaders().get("scst_partitionOverride")).removeHeader("scst_partitionOverride").build();
+        return encodeEventKey(EventConverterConfigurer.this.messageBuilderFactory.fromMessage(message), message).setHeader("scst_partition", message.getHeaders().get("scst_partitionOverride")).removeHeader("scst_partitionOverride").build();
       }
     }
   }
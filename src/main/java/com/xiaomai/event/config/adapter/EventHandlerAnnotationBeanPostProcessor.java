@@ -35,14 +35,19 @@
 package com.xiaomai.event.config.adapter;
 
 import com.xiaomai.event.annotation.EventHandler;
+import com.xiaomai.event.enums.EventExecutionMode;
+import com.xiaomai.event.executor.EventExecutors;
+import com.xiaomai.event.executor.KeyOrderedExecutor;
 import com.xiaomai.event.utils.EventBindingUtils;
 import com.xiaomai.event.utils.EventHandlerMethodUtils;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.framework.Advised;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.config.BeanExpressionContext;
 import org.springframework.beans.factory.config.BeanExpressionResolver;
@@ -54,6 +59,8 @@ import org.springframework.cloud.stream.binding.BinderAwareChannelResolver;
 import org.springframework.cloud.stream.binding.StreamListenerErrorMessages;
 import org.springframework.cloud.stream.binding.StreamListenerParameterAdapter;
 import org.springframework.cloud.stream.binding.StreamListenerResultAdapter;
+import org.springframework.cloud.stream.config.BindingProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
 import org.springframework.cloud.stream.config.SpringIntegrationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
@@ -61,12 +68,16 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.Environment;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.core.DestinationResolver;
 import org.springframework.messaging.handler.annotation.support.MessageHandlerMethodFactory;
@@ -75,6 +86,10 @@ import org.springframework.util.*;
 
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link BeanPostProcessor} that handles {@link EventHandler} annotations found on bean
@@ -85,10 +100,62 @@ import java.util.*;
  * @author Soby Chacko
  * @author Oleg Zhurakousky
  */
+@Slf4j
 public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcessor, ApplicationContextAware,
-        SmartInitializingSingleton, BeanFactoryAware {
+        SmartInitializingSingleton, BeanFactoryAware, DisposableBean {
 
-    private static final SpelExpressionParser SPEL_EXPRESSION_PARSER = new SpelExpressionParser();
+    /**
+     * The property of the max count of the pending events of each lane
+     */
+    public static final String LANE_CAPACITY_PROPERTY = "scs.event.executor.lane-capacity";
+
+    private static final int DEFAULT_LANE_CAPACITY = 256;
+
+    /**
+     * The property of the global execution mode of the event handlers, e.g. {@code virtual-thread}
+     */
+    public static final String EXECUTION_MODE_PROPERTY = "scs.event.executor.mode";
+
+    /**
+     * The property of the thread count of the platform thread pool, the fallback of the virtual
+     * threads before JDK 21
+     */
+    public static final String PLATFORM_THREADS_PROPERTY = "scs.event.executor.platform-threads";
+
+    private static final int DEFAULT_PLATFORM_THREADS = 200;
+
+    /**
+     * The property to run the matching handlers of an event in parallel, overridden per binding
+     * by {@code scs.event.dispatch.bindings.<binding>.parallel}
+     */
+    public static final String PARALLEL_FAN_OUT_PROPERTY = "scs.event.dispatch.parallel";
+
+    /**
+     * The property of the count of the parallel handlers to complete before the acknowledgment,
+     * all of them by default, overridden per binding by {@code scs.event.dispatch.bindings.<binding>.quorum}
+     */
+    public static final String FAN_OUT_QUORUM_PROPERTY = "scs.event.dispatch.quorum";
+
+    /**
+     * The property of the thread count of the fan-out executor
+     */
+    public static final String FAN_OUT_THREADS_PROPERTY = "scs.event.dispatch.threads";
+
+    /**
+     * The bean name of the custom {@link Executor} of the parallel fan-out
+     */
+    public static final String FAN_OUT_EXECUTOR_BEAN_NAME = "scsEventFanOutExecutor";
+
+    private static final String BINDING_DISPATCH_PROPERTY_PREFIX = "scs.event.dispatch.bindings.";
+
+    private static final int DEFAULT_FAN_OUT_THREADS = 16;
+
+    /**
+     * The conditions are compiled after the first evaluations, and interpreted again if the
+     * compiled form fails, e.g. on a header of another type
+     */
+    private static final SpelExpressionParser SPEL_EXPRESSION_PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, EventHandlerAnnotationBeanPostProcessor.class.getClassLoader()));
 
     private final MultiValueMap<String, StreamListenerHandlerMethodMapping> mappedListenerMethods = new LinkedMultiValueMap<>();
 
@@ -112,6 +179,20 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
 
     private Set<EventHandlerSetupMethodOrchestrator> eventHandlerSetupMethodOrchestrators = new LinkedHashSet<>();
 
+    private final List<KeyShardedMessageHandler> keyShardedMessageHandlers = new CopyOnWriteArrayList<>();
+
+    /**
+     * The executor shared by the handlers in the virtual thread mode, created on demand
+     */
+    private ExecutorService virtualThreadExecutor;
+
+    /**
+     * The executor of the parallel fan-out, created on demand
+     */
+    private Executor fanOutExecutor;
+
+    private ExecutorService ownedFanOutExecutor;
+
     @Override
     public final void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = (ConfigurableApplicationContext) applicationContext;
@@ -127,9 +208,7 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
                 .entrySet()) {
             ArrayList<DispatchingEventHandlerMessageHandler.ConditionalStreamListenerMessageHandlerWrapper> handlers = new ArrayList<>();
             for (StreamListenerHandlerMethodMapping mapping : mappedBindingEntry.getValue()) {
-                final InvocableHandlerMethod invocableHandlerMethod = this.messageHandlerMethodFactory
-                        .createInvocableHandlerMethod(mapping.getTargetBean(),
-                                checkProxy(mapping.getMethod(), mapping.getTargetBean()));
+                final InvocableHandlerMethod invocableHandlerMethod = createInvocableHandlerMethod(mapping);
                 EventHandlerMessageHandler streamListenerMessageHandler = new EventHandlerMessageHandler(
                         invocableHandlerMethod, resolveExpressionAsBoolean(mapping.getCopyHeaders(), "copyHeaders"),
                         springIntegrationProperties.getMessageHandlerNotPropagatedHeaders());
@@ -138,6 +217,14 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
                 if (StringUtils.hasText(mapping.getDefaultOutputChannel())) {
                     streamListenerMessageHandler.setOutputChannelName(mapping.getDefaultOutputChannel());
                 }
+                if (isVirtualThread(mapping)) {
+                    Assert.isTrue(!mapping.isBatch() && mapping.getEventHandler().lanes() <= 1,
+                            "The virtual thread mode cannot be combined with the batch or the lanes: " + mapping.getMethod());
+                    Assert.isTrue(streamListenerMessageHandler.isVoid(),
+                            "The virtual thread mode requires a method that does not return a value: " + mapping.getMethod());
+                    streamListenerMessageHandler.setKeyOrderedExecutor(new KeyOrderedExecutor(getVirtualThreadExecutor(),
+                            mapping.getEventHandler().maxInFlight()));
+                }
                 streamListenerMessageHandler.afterPropertiesSet();
                 if (StringUtils.hasText(mapping.getCondition())) {
                     String conditionAsString = resolveExpressionAsString(mapping.getCondition(), "condition");
@@ -151,6 +238,9 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
                                     null, streamListenerMessageHandler));
                 }
             }
+            long batchHandlerCount = mappedBindingEntry.getValue().stream().filter(StreamListenerHandlerMethodMapping::isBatch).count();
+            Assert.isTrue(batchHandlerCount == 0 || batchHandlerCount == handlers.size(),
+                    "Batch and non-batch @EventHandler methods cannot be mixed on binding " + mappedBindingEntry.getKey());
             if (handlers.size() > 1) {
                 for (DispatchingEventHandlerMessageHandler.ConditionalStreamListenerMessageHandlerWrapper handler : handlers) {
                     Assert.isTrue(handler.isVoid(), StreamListenerErrorMessages.MULTIPLE_VALUE_RETURNING_METHODS);
@@ -159,7 +249,10 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
             AbstractReplyProducingMessageHandler handler;
 
             if (handlers.size() > 1 || handlers.get(0).getCondition() != null) {
-                handler = new DispatchingEventHandlerMessageHandler(handlers, evaluationContext);
+                DispatchingEventHandlerMessageHandler dispatchingHandler = new DispatchingEventHandlerMessageHandler(
+                        handlers, evaluationContext);
+                configureFanOut(mappedBindingEntry.getKey(), dispatchingHandler);
+                handler = dispatchingHandler;
             } else {
                 handler = handlers.get(0).getStreamListenerMessageHandler();
             }
@@ -168,14 +261,153 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
             handler.afterPropertiesSet();
             this.applicationContext.getBeanFactory().registerSingleton(handler.getClass().getSimpleName() + handler.hashCode(), handler);
 
+            MessageHandler subscribedHandler = createKeyShardedHandlerIfNecessary(mappedBindingEntry.getKey(),
+                    mappedBindingEntry.getValue(), handler);
             mappedBindingEntry.getValue().forEach(v -> {
                 String bindingNameWithChannel = mappedBindingEntry.getKey();
-                applicationContext.getBean(bindingNameWithChannel, SubscribableChannel.class).subscribe(handler);
+                applicationContext.getBean(bindingNameWithChannel, SubscribableChannel.class).subscribe(subscribedHandler);
             });
         }
         this.mappedListenerMethods.clear();
     }
 
+    /**
+     * Resolve the error channel of the consumer binding, {@code <destination>.<group>.errors}, to which the binder
+     * subscribes its recoverer, or the global error channel for the anonymous consumer
+     * @param bindingName the binding name
+     * @return the error channel name
+     */
+    private String resolveErrorChannelName(String bindingName) {
+        BindingProperties bindingProperties = this.applicationContext.getBean(BindingServiceProperties.class)
+                .getBindingProperties(bindingName);
+        if (!StringUtils.hasText(bindingProperties.getGroup())) {
+            return IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME;
+        }
+        return bindingProperties.getDestination() + "." + bindingProperties.getGroup() + ".errors";
+    }
+
+    /**
+     * Wrap the handler of the binding to execute in the key sharded lanes if any event handler of
+     * the binding specifies the lanes, or to defer the acknowledgment if any is asynchronous or
+     * executed in the virtual threads
+     * @param bindingName the binding name
+     * @param mappings the event handler mappings of the binding
+     * @param handler the handler of the binding
+     * @return the handler to subscribe to the binding
+     */
+    private MessageHandler createKeyShardedHandlerIfNecessary(String bindingName,
+            List<StreamListenerHandlerMethodMapping> mappings, AbstractReplyProducingMessageHandler handler) {
+        int lanes = mappings.stream().mapToInt(m -> m.getEventHandler().lanes()).max().orElse(1);
+        boolean async = mappings.stream().anyMatch(m -> m.isAsync() || isVirtualThread(m));
+        if (lanes <= 1 && !async) {
+            return handler;
+        }
+        Assert.isTrue(lanes <= 1 || mappings.stream().noneMatch(StreamListenerHandlerMethodMapping::isBatch),
+                "The lanes cannot be specified for the batch @EventHandler methods on binding " + bindingName);
+        int maxAttempts = mappings.stream().mapToInt(m -> m.getEventHandler().maxAttempts()).max().orElse(1);
+        int laneCapacity = this.applicationContext.getEnvironment().getProperty(LANE_CAPACITY_PROPERTY,
+                Integer.class, DEFAULT_LANE_CAPACITY);
+        KeyShardedMessageHandler keyShardedHandler = new KeyShardedMessageHandler(bindingName, handler,
+                resolveErrorChannelName(bindingName), lanes, laneCapacity, maxAttempts);
+        keyShardedHandler.setBeanFactory(this.applicationContext.getBeanFactory());
+        keyShardedHandler.afterPropertiesSet();
+        this.keyShardedMessageHandlers.add(keyShardedHandler);
+        return keyShardedHandler;
+    }
+
+    private void configureFanOut(String bindingName, DispatchingEventHandlerMessageHandler handler) {
+        Environment environment = this.applicationContext.getEnvironment();
+        String bindingPrefix = BINDING_DISPATCH_PROPERTY_PREFIX + bindingName + ".";
+        boolean parallel = environment.getProperty(bindingPrefix + "parallel", Boolean.class,
+                environment.getProperty(PARALLEL_FAN_OUT_PROPERTY, Boolean.class, false));
+        if (!parallel) {
+            return;
+        }
+        int quorum = environment.getProperty(bindingPrefix + "quorum", Integer.class,
+                environment.getProperty(FAN_OUT_QUORUM_PROPERTY, Integer.class, 0));
+        handler.setParallelFanOut(getFanOutExecutor(), quorum);
+    }
+
+    private Executor getFanOutExecutor() {
+        if (null == this.fanOutExecutor) {
+            if (this.applicationContext.containsBean(FAN_OUT_EXECUTOR_BEAN_NAME)) {
+                this.fanOutExecutor = this.applicationContext.getBean(FAN_OUT_EXECUTOR_BEAN_NAME, Executor.class);
+            } else {
+                this.ownedFanOutExecutor = EventExecutors.newPlatformThreadPool("fan-out",
+                        this.applicationContext.getEnvironment().getProperty(FAN_OUT_THREADS_PROPERTY, Integer.class,
+                                DEFAULT_FAN_OUT_THREADS));
+                this.fanOutExecutor = this.ownedFanOutExecutor;
+            }
+        }
+        return this.fanOutExecutor;
+    }
+
+    private boolean isVirtualThread(StreamListenerHandlerMethodMapping mapping) {
+        return mapping.getEventHandler().executionMode()
+                .resolve(this.applicationContext.getEnvironment().getProperty(EXECUTION_MODE_PROPERTY))
+                == EventExecutionMode.VIRTUAL_THREAD;
+    }
+
+    private ExecutorService getVirtualThreadExecutor() {
+        if (null == this.virtualThreadExecutor) {
+            int platformThreads = this.applicationContext.getEnvironment().getProperty(PLATFORM_THREADS_PROPERTY,
+                    Integer.class, DEFAULT_PLATFORM_THREADS);
+            this.virtualThreadExecutor = EventExecutors.newVirtualThreadPerTaskExecutor("handler", platformThreads);
+        }
+        return this.virtualThreadExecutor;
+    }
+
+    /**
+     * Revoke the partitions of the binding from its key sharded handlers on the rebalance
+     * @param bindingName the input binding name
+     * @param partitions the revoked partitions, as {@code <topic>-<partition>}
+     */
+    void revokePartitions(String bindingName, Collection<String> partitions) {
+        for (KeyShardedMessageHandler handler : this.keyShardedMessageHandlers) {
+            if (handler.getBindingName().equals(bindingName)) {
+                handler.revokePartitions(partitions);
+            }
+        }
+    }
+
+    /**
+     * Drain the key sharded lanes and the executors, the bindings are stopped before the
+     * singletons are destroyed
+     */
+    @Override
+    public void destroy() {
+        this.keyShardedMessageHandlers.forEach(KeyShardedMessageHandler::close);
+        this.keyShardedMessageHandlers.clear();
+        shutdown(this.virtualThreadExecutor, "handler");
+        this.virtualThreadExecutor = null;
+        shutdown(this.ownedFanOutExecutor, "fan-out");
+        this.ownedFanOutExecutor = null;
+        this.fanOutExecutor = null;
+    }
+
+    private static void shutdown(ExecutorService executor, String name) {
+        if (null == executor) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("The event {} executor is closed with the pending invocations", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private InvocableHandlerMethod createInvocableHandlerMethod(StreamListenerHandlerMethodMapping mapping) {
+        Method method = checkProxy(mapping.getMethod(), mapping.getTargetBean());
+        if (this.messageHandlerMethodFactory instanceof EventHandlerMethodFactory) {
+            return ((EventHandlerMethodFactory) this.messageHandlerMethodFactory)
+                    .createInvocableHandlerMethod(mapping.getTargetBean(), method, mapping.getEventHandler());
+        }
+        return this.messageHandlerMethodFactory.createInvocableHandlerMethod(mapping.getTargetBean(), method);
+    }
+
     @Override
     public final Object postProcessAfterInitialization(Object bean, final String beanName) throws BeansException {
         Class<?> targetClass = AopUtils.isAopProxy(bean) ? AopUtils.getTargetClass(bean) : bean.getClass();
@@ -327,8 +559,11 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
 
         private final String channel;
 
+        private final EventHandler eventHandler;
+
         StreamListenerHandlerMethodMapping(Object targetBean, Method method, String channel,
-            String condition, String defaultOutputChannel, String copyHeaders) {
+            String condition, String defaultOutputChannel, String copyHeaders, EventHandler eventHandler) {
+            this.eventHandler = eventHandler;
             this.targetBean = targetBean;
             this.method = method;
             this.condition = condition;
@@ -360,6 +595,18 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
         public String getChannel() {
             return this.channel;
         }
+
+        EventHandler getEventHandler() {
+            return this.eventHandler;
+        }
+
+        boolean isBatch() {
+            return this.eventHandler.batchSize() > 1;
+        }
+
+        boolean isAsync() {
+            return EventHandlerMethodUtils.isAsyncReturnType(this.method.getReturnType());
+        }
     }
 
     @SuppressWarnings("rawtypes")
@@ -438,7 +685,9 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
         private void registerHandlerMethodOnListenedChannel(Method method, EventHandler eventHandler, Object bean) {
             Assert.notNull(eventHandler.value(), "The adapter eventClass cannot be null");
             final String defaultOutputChannel = EventHandlerMethodUtils.getOutboundBindingTargetName(method);
-            if (Void.TYPE.equals(method.getReturnType())) {
+            if (Void.TYPE.equals(method.getReturnType())
+                    || EventHandlerMethodUtils.isAsyncReturnType(method.getReturnType())) {
+                // the result of the asynchronous method is consumed by the lifecycle on completion
                 Assert.isTrue(StringUtils.isEmpty(defaultOutputChannel),
                         "An output channel cannot be specified for a method that does not return a value");
             } else {
@@ -446,6 +695,11 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
                         "An output channel must be specified for a method that can return a value");
             }
             EventHandlerMethodUtils.validateStreamListenerMessageHandler(method);
+            if (eventHandler.batchSize() > 1) {
+                EventHandlerMethodUtils.validateBatchEventHandlerMethod(method);
+                Assert.isTrue(!StringUtils.hasText(eventHandler.condition()),
+                        "A condition cannot be specified for a batch @EventHandler method: " + method);
+            }
 
             if (eventHandler.channels().length > 0) {
                 for (String channel: eventHandler.channels()) {
@@ -455,14 +709,14 @@ public class EventHandlerAnnotationBeanPostProcessor implements BeanPostProcesso
                         mappedListenerMethods.add(bindingName,
                             new StreamListenerHandlerMethodMapping(bean, method, channel,
                                 eventHandler.condition(), defaultOutputChannel,
-                                eventHandler.copyHeaders()));
+                                eventHandler.copyHeaders(), eventHandler));
                     }
                 }
             } else {
                 mappedListenerMethods.add(EventBindingUtils.resolveInputBindingName(eventHandler.value()),
                     new StreamListenerHandlerMethodMapping(bean, method, null,
                         eventHandler.condition(), defaultOutputChannel,
-                        eventHandler.copyHeaders()));
+                        eventHandler.copyHeaders(), eventHandler));
             }
         }
 
@@ -34,22 +34,33 @@
 
 package com.xiaomai.event.config.adapter;
 
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.executor.EventCompletion;
+import com.xiaomai.event.executor.KeyOrderedExecutor;
+import com.xiaomai.event.utils.StructuredArguments;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+import org.springframework.util.StringUtils;
 
 /**
  * @author Marius Bogoevici
  * @author Gary Russell
  * @since 1.2
  */
+@Slf4j
 public class EventHandlerMessageHandler extends AbstractReplyProducingMessageHandler {
 
 	private final InvocableHandlerMethod invocableHandlerMethod;
 
 	private final boolean copyHeaders;
 
+	private KeyOrderedExecutor keyOrderedExecutor;
+
 	EventHandlerMessageHandler(InvocableHandlerMethod invocableHandlerMethod, boolean copyHeaders,
                                String[] notPropagatedHeaders) {
 		super();
@@ -58,6 +69,14 @@ public class EventHandlerMessageHandler extends AbstractReplyProducingMessageHan
 		this.setNotPropagatedHeaders(notPropagatedHeaders);
 	}
 
+	/**
+	 * Hand the invocations to the executor, ordered by the event key
+	 * @param keyOrderedExecutor the executor of the invocations
+	 */
+	void setKeyOrderedExecutor(KeyOrderedExecutor keyOrderedExecutor) {
+		this.keyOrderedExecutor = keyOrderedExecutor;
+	}
+
 	@Override
 	protected boolean shouldCopyRequestHeaders() {
 		return this.copyHeaders;
@@ -67,8 +86,57 @@ public class EventHandlerMessageHandler extends AbstractReplyProducingMessageHan
 		return invocableHandlerMethod.isVoid();
 	}
 
+	InvocableHandlerMethod getInvocableHandlerMethod() {
+		return this.invocableHandlerMethod;
+	}
+
 	@Override
 	protected Object handleRequestMessage(Message<?> requestMessage) {
+		if (null != this.keyOrderedExecutor) {
+			executeOrdered(requestMessage);
+			return null;
+		}
+		return invokeHandlerMethod(requestMessage);
+	}
+
+	/**
+	 * Execute the invocation in the executor, the acknowledgment is deferred until it completes.
+	 * The events without the key are ordered by the partition.
+	 * @param requestMessage the message
+	 */
+	private void executeOrdered(Message<?> requestMessage) {
+		MessageHeaders headers = requestMessage.getHeaders();
+		String eventKey = EventHandlerMethod.getStringFromHeader(headers, EventBuiltinAttr.EVENT_KEY.getKey());
+		Object key = StringUtils.hasText(eventKey) ? eventKey
+				: null != headers.get(KafkaHeaders.RECEIVED_PARTITION_ID)
+				? headers.get(KafkaHeaders.RECEIVED_TOPIC) + "-" + headers.get(KafkaHeaders.RECEIVED_PARTITION_ID)
+				: new Object();
+		Runnable completion = EventCompletion.defer();
+		try {
+			// rebind the completion in the executing thread, so the asynchronous handler methods defer it as well
+			this.keyOrderedExecutor.execute(key, () -> new EventCompletion(completion)
+					.run(() -> invokeHandlerMethod(requestMessage)))
+					.whenComplete((r, t) -> {
+						if (null != t) {
+							log.error("Event handling failed! {}, {}",
+									StructuredArguments.keyValue(EventBuiltinAttr.EVENT_KEY.getKey(), eventKey),
+									StructuredArguments.keyValue("method", this.invocableHandlerMethod.getShortLogMessage()), t);
+							completion.run();
+						}
+					});
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			completion.run();
+			throw new MessagingException(requestMessage, "Interrupted while waiting for the in-flight permit", e);
+		}
+		catch (RuntimeException e) {
+			completion.run();
+			throw e;
+		}
+	}
+
+	private Object invokeHandlerMethod(Message<?> requestMessage) {
 		try {
 			return this.invocableHandlerMethod.invoke(requestMessage);
 		}
@@ -18,19 +18,32 @@
 package com.xiaomai.event.config.adapter;
 
 import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.dedup.EventDedupStore;
+import com.xiaomai.event.executor.EventCompletion;
 import com.xiaomai.event.lifecycle.IEventLifecycle;
+import com.xiaomai.event.metrics.EventMetrics;
+import com.xiaomai.event.trace.EventTracePhase;
+import com.xiaomai.event.trace.EventTraceSink;
+import com.xiaomai.event.trace.LoggingEventTraceSink;
+import com.xiaomai.event.utils.EventClassDescriptor;
+import com.xiaomai.event.utils.EventHandlerMethodUtils;
 import com.xiaomai.event.utils.StructuredArguments;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
-import org.springframework.util.ClassUtils;
+import org.springframework.util.Assert;
 
 import java.lang.reflect.Method;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import org.springframework.util.StringUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by baihe on 2017/4/7.
@@ -38,26 +51,140 @@ import org.springframework.util.StringUtils;
 @Slf4j
 public class EventHandlerMethod extends InvocableHandlerMethod {
 
-    private static final ThreadLocal<DateFormat> FMT_THREAD_LOCAL =
-            ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+    /**
+     * The default max count of the in-flight invocations of an asynchronous handler method
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
 
-    private final IEventLifecycle eventLifecycle;
+    /**
+     * The scheduler of the retries of the asynchronous handler methods
+     */
+    private static volatile ScheduledExecutorService retryScheduler;
 
-    private final Object myBean;
+    private static final EventTraceSink DEFAULT_TRACE_SINK = new LoggingEventTraceSink();
 
-    private final Method myMethod;
+    private final IEventLifecycle eventLifecycle;
 
     private final String customerKey;
 
+    private final String methodName;
+
+    /**
+     * The sink of the handling traces
+     */
+    private EventTraceSink eventTraceSink = DEFAULT_TRACE_SINK;
+
+    /**
+     * The store of the consumed events, null if the duplicates are not suppressed
+     */
+    private EventDedupStore eventDedupStore;
+
+    /**
+     * The metrics of the handling
+     */
+    private EventMetrics eventMetrics = EventMetrics.NOOP;
+
+    /**
+     * The consumer key of the dedup store, distinct per handler method
+     */
+    private final String dedupKey;
+
+    /**
+     * Whether the handler method returns a {@code CompletionStage} or a {@code Publisher}
+     */
+    private final boolean async;
+
+    /**
+     * The permits of the in-flight invocations of the asynchronous handler method
+     */
+    private final Semaphore inFlightPermits;
+
+    /**
+     * The max attempts of the asynchronous handler method
+     */
+    private final int maxAttempts;
+
     public EventHandlerMethod(Object bean, Method method, IEventLifecycle eventLifecycle, String customerKey) {
+        this(bean, method, eventLifecycle, customerKey, DEFAULT_MAX_IN_FLIGHT, 1);
+    }
+
+    public EventHandlerMethod(Object bean, Method method, IEventLifecycle eventLifecycle, String customerKey,
+        int maxInFlight, int maxAttempts) {
         super(bean, method);
         this.eventLifecycle = eventLifecycle;
-        this.myBean = bean;
-        this.myMethod = method;
         this.customerKey = customerKey;
+        this.methodName = bean.getClass().getName() + "." + method.getName();
+        this.dedupKey = customerKey + ":" + this.methodName;
+        this.async = EventHandlerMethodUtils.isAsyncReturnType(method.getReturnType());
+        this.inFlightPermits = new Semaphore(Math.max(1, maxInFlight));
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * The asynchronous handler method is void to the message handler, for the result is consumed
+     * by the lifecycle on completion
+     * @return whether the handler produces no reply
+     */
+    @Override
+    public boolean isVoid() {
+        return async || super.isVoid();
+    }
+
+    IEventLifecycle getEventLifecycle() {
+        return eventLifecycle;
+    }
+
+    String getCustomerKey() {
+        return customerKey;
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Set the sink of the handling traces
+     * @param eventTraceSink the event trace sink
+     */
+    void setEventTraceSink(EventTraceSink eventTraceSink) {
+        Assert.notNull(eventTraceSink, "eventTraceSink cannot be null");
+        this.eventTraceSink = eventTraceSink;
+    }
+
+    EventTraceSink getEventTraceSink() {
+        return eventTraceSink;
     }
 
-    private static String getStringFromHeader(MessageHeaders messageHeaders, String key) {
+    EventMetrics getEventMetrics() {
+        return eventMetrics;
+    }
+
+    /**
+     * Set the store of the consumed events to suppress the redelivered events
+     * @param eventDedupStore the event dedup store, null to disable
+     */
+    void setEventDedupStore(EventDedupStore eventDedupStore) {
+        this.eventDedupStore = eventDedupStore;
+    }
+
+    EventDedupStore getEventDedupStore() {
+        return eventDedupStore;
+    }
+
+    String getDedupKey() {
+        return dedupKey;
+    }
+
+    /**
+     * Set the metrics of the handling
+     * @param eventMetrics the event metrics
+     */
+    void setEventMetrics(EventMetrics eventMetrics) {
+        Assert.notNull(eventMetrics, "eventMetrics cannot be null");
+        this.eventMetrics = eventMetrics;
+    }
+
+    static String getStringFromHeader(MessageHeaders messageHeaders, String key) {
         Object value = messageHeaders.get(key);
         if (value == null) {
             return "";
@@ -66,7 +193,7 @@ public class EventHandlerMethod extends InvocableHandlerMethod {
             return (String)value;
         }
         if (value instanceof byte[]) {
-            return new String((byte[])value);
+            return new String((byte[])value, StandardCharsets.UTF_8);
         }
         try {
             return String.valueOf(value);
@@ -77,8 +204,11 @@ public class EventHandlerMethod extends InvocableHandlerMethod {
         }
     }
 
-    private static Long getLongFromHeader(MessageHeaders messageHeaders, String key) {
+    static Long getLongFromHeader(MessageHeaders messageHeaders, String key) {
         Object value = messageHeaders.get(key);
+        if (value == null) {
+            return null;
+        }
         if (Long.class.isAssignableFrom(value.getClass())) {
             return (Long)value;
         }
@@ -86,74 +216,285 @@ public class EventHandlerMethod extends InvocableHandlerMethod {
             return Long.valueOf((int)value);
         }
         if (value instanceof byte[]) {
-            return Long.valueOf(new String((byte[])value));
+            return parseLong((byte[])value, key);
         }
         throw new IllegalArgumentException("Incorrect type specified for header '" +
                 key + "'. Expected [" + Long.class + "] but actual type is [" + value.getClass() + "]");
     }
 
+    /**
+     * Parse the decimal digits of the header bytes without decoding them to a string
+     */
+    private static Long parseLong(byte[] bytes, String key) {
+        int start = bytes.length > 0 && (bytes[0] == '-' || bytes[0] == '+') ? 1 : 0;
+        if (bytes.length == start || bytes.length - start > 18) {
+            // empty, or may overflow
+            return Long.valueOf(new String(bytes, StandardCharsets.UTF_8));
+        }
+        long value = 0;
+        for (int i = start; i < bytes.length; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Incorrect number for header '" + key + "': "
+                    + new String(bytes, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + digit;
+        }
+        return start > 0 && bytes[0] == '-' ? -value : value;
+    }
+
     @Override
     public Object invoke(Message<?> message, Object... providedArgs) throws Exception {
         Long eventExecuteStart = System.currentTimeMillis();
         MessageHeaders messageHeaders = message.getHeaders();
 
-        String eventSeq = getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_ID.getKey());
-        String eventKey = getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_KEY.getKey());
+        EventHeaderView eventHeaders = EventHeaderView.of(messageHeaders);
 
         //*IMPORTANT* fallback to InvocableHandlerMethod if the message is not an event
         //For we hack the messageHandlerMethodFactory bean
-        if (!StringUtils.hasText(eventSeq)) {
-            return super.invoke(message, providedArgs);
+        if (null == eventHeaders) {
+            Object result = super.invoke(message, providedArgs);
+            if (async) {
+                toFuture(result).whenComplete((r, t) -> {
+                    if (null != t) {
+                        log.error("Message handling failed! {}", StructuredArguments.keyValue("method", getMethodName()), t);
+                    }
+                });
+                return null;
+            }
+            return result;
         }
 
-        Class<?> eventPayloadClass = ClassUtils.resolveClassName(
-                getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_CLASS.getKey()), null);
-        Long eventTriggerTime = getLongFromHeader(messageHeaders, EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey());
-        String producer = getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_TRIGGER_APP.getKey());
+        String eventSeq = eventHeaders.getEventSeq();
+        String eventKey = eventHeaders.getEventKey();
+        EventInvocation invocation = new EventInvocation(message, providedArgs, eventHeaders, eventExecuteStart);
+
+        eventTraceSink.record(EventTracePhase.RECEIVED, eventSeq, eventKey, invocation.eventPayloadClass, methodName,
+            invocation.producer, invocation.eventTriggerTime, eventExecuteStart, eventExecuteStart, null);
+        if (invocation.eventTriggerTime > 0) {
+            eventMetrics.recordLag(invocation.eventName, customerKey, eventExecuteStart - invocation.eventTriggerTime);
+        }
 
-        log.info("Received event {}, {}, {}, {}, {}, {}, invoking {} ...",
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq),
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_KEY.getKey(), eventKey),
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_CLASS.getKey(), eventPayloadClass.getName()),
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(),
-                    FMT_THREAD_LOCAL.get().format(new Date(eventTriggerTime))),
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), producer),
-                StructuredArguments.keyValue("lagTime", checkDuration(eventTriggerTime, eventExecuteStart)),
-                StructuredArguments.keyValue("method", myBean.getClass().getName() + "." + myMethod.getName()));
+        // check before the lifecycle and the payload conversion, the redelivered events cost a lookup only
+        if (null != eventDedupStore && eventDedupStore.isDuplicate(eventSeq, dedupKey)) {
+            eventTraceSink.record(EventTracePhase.DUPLICATE, eventSeq, eventKey, invocation.eventPayloadClass, methodName,
+                invocation.producer, invocation.eventTriggerTime, eventExecuteStart, eventExecuteStart, null);
+            eventMetrics.recordExecution(invocation.eventName, customerKey, EventMetrics.OUTCOME_DUPLICATE, 0L);
+            return null;
+        }
 
         Object eventResult = null;
-        boolean needExec = eventLifecycle.onExecute(eventSeq, customerKey, eventPayloadClass);
+        boolean needExec = eventLifecycle.onExecute(eventSeq, customerKey, invocation.eventPayloadClass);
         if (needExec) {
+            if (async) {
+                invokeAsync(invocation);
+                return null;
+            }
             try {
                 eventResult = super.invoke(message, providedArgs);
             } catch (Exception e) {
-                log.error("Event handling failed! {}, {}, {}, {}, {}",
-                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq),
-                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_KEY.getKey(), eventKey),
-                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_CLASS.getKey(), eventPayloadClass.getName()),
-                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(),
-                        FMT_THREAD_LOCAL.get().format(new Date(eventTriggerTime))),
-                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), producer), e);
-                eventLifecycle.onFail(eventSeq, customerKey, eventPayloadClass, e);
+                failed(invocation, e);
                 return null;
             }
-
-            log.info("Event handling succeeded! {}, {}, {}, {}, {}, {}",
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq),
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_KEY.getKey(), eventKey),
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_CLASS.getKey(), eventPayloadClass.getName()),
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(),
-                    FMT_THREAD_LOCAL.get().format(new Date(eventTriggerTime))),
-                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), producer),
-                StructuredArguments.keyValue("executeTime", checkDuration(eventExecuteStart, System.currentTimeMillis())));
-            eventLifecycle.onSuccess(eventSeq, customerKey, eventPayloadClass);
+            succeeded(invocation);
+        } else {
+            eventMetrics.recordExecution(invocation.eventName, customerKey, EventMetrics.OUTCOME_SKIPPED,
+                System.currentTimeMillis() - eventExecuteStart);
         }
         return eventResult;
     }
 
-    private static String checkDuration(Long start, Long end) {
+    /**
+     * Invoke the asynchronous handler method, the lifecycle is called on the completion of the
+     * returned future, and the acknowledgment of the event is deferred until then
+     * @param invocation the event invocation
+     * @throws InterruptedException if interrupted while waiting for the in-flight permit
+     */
+    private void invokeAsync(EventInvocation invocation) throws InterruptedException {
+        // block the consumer when the in-flight invocations reach the cap
+        inFlightPermits.acquire();
+        invocation.completion = EventCompletion.defer();
+        attemptAsync(invocation);
+    }
+
+    private void attemptAsync(EventInvocation invocation) {
+        invocation.attempts++;
+        CompletableFuture<?> future;
+        try {
+            future = toFuture(super.invoke(invocation.message, invocation.providedArgs));
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((result, t) -> {
+            boolean retrying = false;
+            try {
+                if (null == t) {
+                    succeeded(invocation);
+                    return;
+                }
+                Exception e = unwrap(t);
+                if (invocation.attempts < maxAttempts) {
+                    retrying = scheduleRetry(invocation, e);
+                    if (retrying) {
+                        return;
+                    }
+                }
+                failed(invocation, e);
+            } catch (RuntimeException e) {
+                log.error("Event completion failed! {}",
+                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), invocation.eventSeq), e);
+            } finally {
+                // always release the permit and complete the offset, unless the next attempt does
+                if (!retrying) {
+                    completeAsync(invocation);
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedule the next attempt of the asynchronous handler method after the back off
+     * @param invocation the event invocation
+     * @param e the failure of the last attempt
+     * @return true if scheduled, false if the retry scheduler rejects it
+     */
+    private boolean scheduleRetry(EventInvocation invocation, Exception e) {
+        log.warn("Event handling failed, retrying! {}, {}, {}",
+            StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), invocation.eventSeq),
+            StructuredArguments.keyValue("attempts", invocation.attempts),
+            StructuredArguments.keyValue("reason", e.getMessage()));
+        try {
+            getRetryScheduler().schedule(() -> attemptAsync(invocation), backOff(invocation.attempts),
+                TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException rejected) {
+            log.warn("Event retry rejected, failing the event! {}",
+                StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), invocation.eventSeq));
+            return false;
+        }
+        eventMetrics.recordRetry(invocation.eventName, customerKey);
+        return true;
+    }
+
+    private void completeAsync(EventInvocation invocation) {
+        inFlightPermits.release();
+        invocation.completion.run();
+    }
+
+    private void succeeded(EventInvocation invocation) {
+        long eventExecuteEnd = System.currentTimeMillis();
+        eventTraceSink.record(EventTracePhase.HANDLED, invocation.eventSeq, invocation.eventKey,
+            invocation.eventPayloadClass, methodName, invocation.producer, invocation.eventTriggerTime,
+            invocation.eventExecuteStart, eventExecuteEnd, null);
+        eventMetrics.recordExecution(invocation.eventName, customerKey, EventMetrics.OUTCOME_SUCCESS,
+            eventExecuteEnd - invocation.eventExecuteStart);
+        if (null != eventDedupStore) {
+            eventDedupStore.markConsumed(invocation.eventSeq, dedupKey);
+        }
+        eventLifecycle.onSuccess(invocation.eventSeq, customerKey, invocation.eventPayloadClass);
+    }
+
+    private void failed(EventInvocation invocation, Exception e) {
+        long eventExecuteEnd = System.currentTimeMillis();
+        eventTraceSink.record(EventTracePhase.HANDLE_FAILED, invocation.eventSeq, invocation.eventKey,
+            invocation.eventPayloadClass, methodName, invocation.producer, invocation.eventTriggerTime,
+            invocation.eventExecuteStart, eventExecuteEnd, e);
+        eventMetrics.recordExecution(invocation.eventName, customerKey, EventMetrics.OUTCOME_FAILURE,
+            eventExecuteEnd - invocation.eventExecuteStart);
+        eventLifecycle.onFail(invocation.eventSeq, customerKey, invocation.eventPayloadClass, e);
+    }
+
+    /**
+     * Adapt the result of the asynchronous handler method to the future of its completion
+     * @param result the result of the handler method
+     * @return the future completed with the result
+     */
+    private static CompletableFuture<?> toFuture(Object result) {
+        if (result instanceof CompletionStage) {
+            return ((CompletionStage<?>) result).toCompletableFuture();
+        }
+        if (null != result && EventHandlerMethodUtils.isPublisher(result)) {
+            return PublisherCompletion.subscribe(result);
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    private static Exception unwrap(Throwable t) {
+        Throwable cause = t instanceof CompletionException && null != t.getCause() ? t.getCause() : t;
+        return cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause);
+    }
+
+    /**
+     * The back off of the retries, the same as the binder defaults
+     * @param attempts the attempts made
+     * @return the back off in milliseconds
+     */
+    private static long backOff(int attempts) {
+        return Math.min(10_000L, 1_000L << Math.min(attempts - 1, 4));
+    }
+
+    private static ScheduledExecutorService getRetryScheduler() {
+        if (null == retryScheduler) {
+            synchronized (EventHandlerMethod.class) {
+                if (null == retryScheduler) {
+                    retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "scs-event-retry");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return retryScheduler;
+    }
+
+    static String checkDuration(Long start, Long end) {
         Long msDiff = end - start;
         return msDiff < 1000 ? (msDiff + "ms") : ((msDiff/1000.0) + "s");
     }
 
+    /**
+     * The state of an event invocation
+     */
+    private static final class EventInvocation {
+
+        private final Message<?> message;
+
+        private final Object[] providedArgs;
+
+        private final String eventSeq;
+
+        private final String eventKey;
+
+        private final Class<?> eventPayloadClass;
+
+        private final String eventName;
+
+        /**
+         * The trigger time, 0 if the header is absent
+         */
+        private final long eventTriggerTime;
+
+        private final String producer;
+
+        private final Long eventExecuteStart;
+
+        private int attempts;
+
+        private Runnable completion;
+
+        EventInvocation(Message<?> message, Object[] providedArgs, EventHeaderView eventHeaders,
+            Long eventExecuteStart) {
+            this.message = message;
+            this.providedArgs = providedArgs;
+            this.eventSeq = eventHeaders.getEventSeq();
+            this.eventKey = eventHeaders.getEventKey();
+            this.eventPayloadClass = eventHeaders.getEventPayloadClass();
+            this.eventName = null == eventPayloadClass ? "unknown" : EventClassDescriptor.of(eventPayloadClass).getEventName();
+            this.eventTriggerTime = null != eventHeaders.getEventTriggerTime() ? eventHeaders.getEventTriggerTime() : 0L;
+            this.producer = eventHeaders.getProducer();
+            this.eventExecuteStart = eventExecuteStart;
+        }
+    }
+
 }
@@ -34,12 +34,19 @@
 
 package com.xiaomai.event.config.adapter;
 
+import com.xiaomai.event.annotation.EventHandler;
+import com.xiaomai.event.dedup.EventDedupStore;
+import com.xiaomai.event.metrics.EventMetrics;
 import com.xiaomai.event.lifecycle.IEventLifecycle;
+import com.xiaomai.event.trace.EventTraceSink;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolverComposite;
 import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+import org.springframework.util.Assert;
 
 import java.lang.reflect.Method;
 import java.util.List;
@@ -51,6 +58,14 @@ public class EventHandlerMethodFactory extends DefaultMessageHandlerMethodFactor
 
     private IEventLifecycle eventLifecycle;
 
+    private MessageConverter messageConverter;
+
+    private EventTraceSink eventTraceSink;
+
+    private EventDedupStore eventDedupStore;
+
+    private EventMetrics eventMetrics;
+
     private final HandlerMethodArgumentResolverComposite myArgumentResolvers =
             new HandlerMethodArgumentResolverComposite();
 
@@ -62,9 +77,89 @@ public class EventHandlerMethodFactory extends DefaultMessageHandlerMethodFactor
     public InvocableHandlerMethod createInvocableHandlerMethod(Object bean, Method method) {
         EventHandlerMethod handlerMethod = new EventHandlerMethod(bean, method, this.eventLifecycle, appName);
         handlerMethod.setMessageMethodArgumentResolvers(this.myArgumentResolvers);
+        if (null != this.eventTraceSink) {
+            handlerMethod.setEventTraceSink(this.eventTraceSink);
+        }
+        handlerMethod.setEventDedupStore(this.eventDedupStore);
+        if (null != this.eventMetrics) {
+            handlerMethod.setEventMetrics(this.eventMetrics);
+        }
         return handlerMethod;
     }
 
+    /**
+     * Create the handler method of the event handler, which consumes the events in batch if the
+     * batch size of the event handler is greater than 1, and limits the in-flight invocations if
+     * the handler method is asynchronous
+     * @param bean the event handler bean
+     * @param method the event handler method
+     * @param eventHandler the event handler annotation
+     * @return the created handler method
+     */
+    public InvocableHandlerMethod createInvocableHandlerMethod(Object bean, Method method, EventHandler eventHandler) {
+        if (null == eventHandler) {
+            return createInvocableHandlerMethod(bean, method);
+        }
+        if (eventHandler.batchSize() <= 1) {
+            EventHandlerMethod handlerMethod = new EventHandlerMethod(bean, method, this.eventLifecycle, appName,
+                eventHandler.maxInFlight(), eventHandler.maxAttempts());
+            handlerMethod.setMessageMethodArgumentResolvers(this.myArgumentResolvers);
+            if (null != this.eventTraceSink) {
+                handlerMethod.setEventTraceSink(this.eventTraceSink);
+            }
+            handlerMethod.setEventDedupStore(this.eventDedupStore);
+            if (null != this.eventMetrics) {
+                handlerMethod.setEventMetrics(this.eventMetrics);
+            }
+            return handlerMethod;
+        }
+        Assert.state(null != this.messageConverter, "the message converter is required by the batch event handler");
+        BatchEventHandlerMethod handlerMethod = new BatchEventHandlerMethod(bean, method, this.eventLifecycle, appName,
+            eventHandler.value(), this.messageConverter);
+        handlerMethod.setMessageMethodArgumentResolvers(this.myArgumentResolvers);
+        if (null != this.eventTraceSink) {
+            handlerMethod.setEventTraceSink(this.eventTraceSink);
+        }
+        handlerMethod.setEventDedupStore(this.eventDedupStore);
+        if (null != this.eventMetrics) {
+            handlerMethod.setEventMetrics(this.eventMetrics);
+        }
+        return handlerMethod;
+    }
+
+    /**
+     * Set the sink of the handling traces, the {@link EventTraceSink} bean is injected if provided
+     * @param eventTraceSink the event trace sink
+     */
+    @Autowired(required = false)
+    public void setEventTraceSink(EventTraceSink eventTraceSink) {
+        this.eventTraceSink = eventTraceSink;
+    }
+
+    /**
+     * Set the store of the consumed events, the {@link EventDedupStore} bean is injected if provided
+     * @param eventDedupStore the event dedup store
+     */
+    @Autowired(required = false)
+    public void setEventDedupStore(EventDedupStore eventDedupStore) {
+        this.eventDedupStore = eventDedupStore;
+    }
+
+    /**
+     * Set the metrics of the handling, the {@link EventMetrics} bean is injected if provided
+     * @param eventMetrics the event metrics
+     */
+    @Autowired(required = false)
+    public void setEventMetrics(EventMetrics eventMetrics) {
+        this.eventMetrics = eventMetrics;
+    }
+
+    @Override
+    public void setMessageConverter(MessageConverter messageConverter) {
+        super.setMessageConverter(messageConverter);
+        this.messageConverter = messageConverter;
+    }
+
     @Override
     public void setArgumentResolvers(List<HandlerMethodArgumentResolver> argumentResolvers) {
         if (argumentResolvers == null) {
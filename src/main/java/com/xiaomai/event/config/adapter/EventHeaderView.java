@@ -0,0 +1,88 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.config.adapter;
+
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.utils.EventClassCache;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.StringUtils;
+
+/**
+ * The event headers of a message decoded once, shared by the logging and the lifecycle of the
+ * invocation instead of decoding the raw headers at each use
+ */
+final class EventHeaderView {
+
+    private final String eventSeq;
+
+    private final String eventKey;
+
+    private final Class<?> eventPayloadClass;
+
+    private final Long eventTriggerTime;
+
+    private final String producer;
+
+    private EventHeaderView(String eventSeq, String eventKey, Class<?> eventPayloadClass, Long eventTriggerTime,
+                            String producer) {
+        this.eventSeq = eventSeq;
+        this.eventKey = eventKey;
+        this.eventPayloadClass = eventPayloadClass;
+        this.eventTriggerTime = eventTriggerTime;
+        this.producer = producer;
+    }
+
+    /**
+     * Decode the event headers of the message
+     * @param messageHeaders the message headers
+     * @return the view, or null if the message is not an event
+     */
+    static EventHeaderView of(MessageHeaders messageHeaders) {
+        String eventSeq = EventHandlerMethod.getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_ID.getKey());
+        if (!StringUtils.hasText(eventSeq)) {
+            return null;
+        }
+        return new EventHeaderView(eventSeq,
+            EventHandlerMethod.getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_KEY.getKey()),
+            EventClassCache.resolve(messageHeaders.get(EventBuiltinAttr.EVENT_CLASS.getKey())),
+            EventHandlerMethod.getLongFromHeader(messageHeaders, EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey()),
+            EventHandlerMethod.getStringFromHeader(messageHeaders, EventBuiltinAttr.EVENT_TRIGGER_APP.getKey()));
+    }
+
+    String getEventSeq() {
+        return eventSeq;
+    }
+
+    String getEventKey() {
+        return eventKey;
+    }
+
+    Class<?> getEventPayloadClass() {
+        return eventPayloadClass;
+    }
+
+    /**
+     * @return the trigger time, null if the header is absent
+     */
+    Long getEventTriggerTime() {
+        return eventTriggerTime;
+    }
+
+    String getProducer() {
+        return producer;
+    }
+}
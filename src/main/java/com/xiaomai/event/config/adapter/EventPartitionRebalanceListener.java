@@ -0,0 +1,46 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.config.adapter;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.cloud.stream.binder.kafka.KafkaBindingRebalanceListener;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * The rebalance listener of the kafka bindings, which revokes the partitions from the key
+ * sharded handlers before the binder commits, so the lanes neither execute nor acknowledge the
+ * records of the partitions owned by another consumer since
+ */
+public class EventPartitionRebalanceListener implements KafkaBindingRebalanceListener {
+
+    private final EventHandlerAnnotationBeanPostProcessor eventHandlerAnnotationBeanPostProcessor;
+
+    public EventPartitionRebalanceListener(EventHandlerAnnotationBeanPostProcessor eventHandlerAnnotationBeanPostProcessor) {
+        this.eventHandlerAnnotationBeanPostProcessor = eventHandlerAnnotationBeanPostProcessor;
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(String bindingName, Consumer<?, ?> consumer,
+        Collection<TopicPartition> partitions) {
+        eventHandlerAnnotationBeanPostProcessor.revokePartitions(bindingName, partitions.stream()
+            .map(partition -> partition.topic() + "-" + partition.partition())
+            .collect(Collectors.toList()));
+    }
+}
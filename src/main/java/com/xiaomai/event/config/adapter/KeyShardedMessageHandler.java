@@ -0,0 +1,210 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.config.adapter;
+
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.executor.EventCompletion;
+import com.xiaomai.event.executor.KeyShardedEventExecutor;
+import com.xiaomai.event.executor.PartitionOffsetTracker;
+import com.xiaomai.event.utils.StructuredArguments;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The message handler executing the events of the binding in the key sharded lanes, the
+ * manual acknowledgment of the kafka binder is deferred until all the lanes finish up to the
+ * offset, including the asynchronous handler methods completing later. With a single lane the
+ * events are executed in the caller and only the acknowledgment is deferred. The messages
+ * without the acknowledgment are executed in the caller as before.
+ *
+ * The lanes retry the failed events themselves, and send the exhausted ones to the error channel
+ * of the binding before their offsets complete, so they reach the recoverer of the binder, e.g.
+ * the DLQ of kafka, as the events failed in the caller do.
+ */
+@Slf4j
+class KeyShardedMessageHandler extends AbstractMessageHandler {
+
+    private final String bindingName;
+
+    private final MessageHandler delegate;
+
+    /**
+     * The error channel of the binding, the global error channel is used if it is not registered
+     */
+    private final String errorChannelName;
+
+    private final KeyShardedEventExecutor executor;
+
+    private final RetryTemplate retryTemplate;
+
+    private final Map<String, PartitionOffsetTracker> offsetTrackers = new ConcurrentHashMap<>();
+
+    KeyShardedMessageHandler(String bindingName, MessageHandler delegate, String errorChannelName, int lanes,
+                             int laneCapacity, int maxAttempts) {
+        this.bindingName = bindingName;
+        this.delegate = delegate;
+        this.errorChannelName = errorChannelName;
+        this.executor = lanes > 1 ? new KeyShardedEventExecutor(bindingName, lanes, laneCapacity) : null;
+        // the binder retries the submission only, so the lane retries the handler with the binder defaults
+        this.retryTemplate = new RetryTemplate();
+        this.retryTemplate.setRetryPolicy(new SimpleRetryPolicy(Math.max(1, maxAttempts)));
+        ExponentialBackOffPolicy backOffPolicy = new ExponentialBackOffPolicy();
+        backOffPolicy.setInitialInterval(1000L);
+        backOffPolicy.setMultiplier(2.0);
+        backOffPolicy.setMaxInterval(10000L);
+        this.retryTemplate.setBackOffPolicy(backOffPolicy);
+    }
+
+    @Override
+    protected void handleMessageInternal(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        Object acknowledgment = headers.get(KafkaHeaders.ACKNOWLEDGMENT);
+        Long offset = headers.get(KafkaHeaders.OFFSET, Long.class);
+        // check null first so the kafka classes are only resolved with the kafka binder
+        if (null == acknowledgment || null == offset || !(acknowledgment instanceof Acknowledgment)) {
+            // the offset is committed by the binder once returned, so execute in the caller
+            this.delegate.handleMessage(message);
+            return;
+        }
+
+        String partition = headers.get(KafkaHeaders.RECEIVED_TOPIC) + "-" + headers.get(KafkaHeaders.RECEIVED_PARTITION_ID);
+        PartitionOffsetTracker offsetTracker = this.offsetTrackers.computeIfAbsent(partition,
+            p -> new PartitionOffsetTracker());
+        PartitionOffsetTracker.PendingOffset pendingOffset = offsetTracker.register(offset,
+            ((Acknowledgment) acknowledgment)::acknowledge);
+        if (null == this.executor) {
+            // the binder retries the handling in the caller, so the failed offset is left pending
+            // until a retry succeeds or the binder recovers the record and moves on
+            AtomicBoolean failed = new AtomicBoolean();
+            new EventCompletion(() -> {
+                if (!failed.get()) {
+                    offsetTracker.complete(pendingOffset);
+                }
+            }).run(() -> {
+                try {
+                    this.delegate.handleMessage(message);
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    offsetTracker.fail(pendingOffset);
+                    throw e;
+                }
+            });
+            return;
+        }
+
+        String eventKey = EventHandlerMethod.getStringFromHeader(headers, EventBuiltinAttr.EVENT_KEY.getKey());
+        Runnable task = () -> new EventCompletion(() -> offsetTracker.complete(pendingOffset)).run(() -> {
+            if (offsetTracker.isRevoked()) {
+                // the partition is reassigned, the record is redelivered to the new owner
+                return;
+            }
+            try {
+                this.retryTemplate.execute(context -> {
+                    this.delegate.handleMessage(message);
+                    return null;
+                });
+            } catch (Exception e) {
+                log.error("Event handling failed in lane! {}, {}, {}",
+                    StructuredArguments.keyValue("binding", this.bindingName),
+                    StructuredArguments.keyValue("partition", partition),
+                    StructuredArguments.keyValue("offset", offset), e);
+                sendToErrorChannel(message, e);
+            }
+        });
+        try {
+            this.executor.execute(StringUtils.hasText(eventKey) ? eventKey : partition, task);
+        } catch (RejectedExecutionException e) {
+            // the lanes are closing, execute in the caller to keep the offset committable
+            task.run();
+        }
+    }
+
+    /**
+     * Send the event failed after the retries to the error channel, with the record rebuilt from
+     * the headers as the kafka binder does, so the DLQ can republish it
+     * @param message the failed event message
+     * @param e the failure
+     */
+    private void sendToErrorChannel(Message<?> message, Exception e) {
+        BeanFactory beanFactory = getBeanFactory();
+        String channelName = beanFactory.containsBean(this.errorChannelName) ? this.errorChannelName
+            : IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME;
+        MessageHeaders headers = message.getHeaders();
+        Map<String, Object> errorHeaders = new HashMap<>();
+        errorHeaders.put(KafkaHeaders.RAW_DATA, new ConsumerRecord<>(headers.get(KafkaHeaders.RECEIVED_TOPIC, String.class),
+            headers.get(KafkaHeaders.RECEIVED_PARTITION_ID, Integer.class), headers.get(KafkaHeaders.OFFSET, Long.class),
+            headers.get(KafkaHeaders.RECEIVED_MESSAGE_KEY), message.getPayload()));
+        try {
+            beanFactory.getBean(channelName, MessageChannel.class).send(new ErrorMessage(
+                new MessagingException(message, "Event handling failed in lane", e), errorHeaders, message));
+        } catch (Exception sendFailure) {
+            log.error("Failed to send the failed event to the error channel! {}, {}",
+                StructuredArguments.keyValue("binding", this.bindingName),
+                StructuredArguments.keyValue("errorChannel", channelName), sendFailure);
+        }
+    }
+
+    /**
+     * Revoke the partitions of the binding on the rebalance, the queued events of the partitions
+     * are discarded and their offsets are no longer acknowledged
+     * @param partitions the revoked partitions, as {@code <topic>-<partition>}
+     */
+    void revokePartitions(Collection<String> partitions) {
+        for (String partition : partitions) {
+            PartitionOffsetTracker offsetTracker = this.offsetTrackers.remove(partition);
+            if (null != offsetTracker) {
+                offsetTracker.revoke();
+            }
+        }
+    }
+
+    String getBindingName() {
+        return this.bindingName;
+    }
+
+    /**
+     * Close the lanes, the pending events are drained before return
+     */
+    void close() {
+        if (null != this.executor) {
+            this.executor.close();
+        }
+    }
+}
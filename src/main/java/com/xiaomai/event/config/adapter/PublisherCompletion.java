@@ -0,0 +1,68 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.config.adapter;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The subscriber draining the publisher returned by the asynchronous handler method, the
+ * elements are discarded and the future completes with the publisher
+ */
+final class PublisherCompletion implements Subscriber<Object> {
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private PublisherCompletion() {
+    }
+
+    /**
+     * Subscribe to the publisher
+     * @param publisher the reactive streams publisher
+     * @return the future completed when the publisher completes or fails
+     */
+    @SuppressWarnings("unchecked")
+    static CompletableFuture<Void> subscribe(Object publisher) {
+        PublisherCompletion completion = new PublisherCompletion();
+        ((Publisher<Object>) publisher).subscribe(completion);
+        return completion.future;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(Object element) {
+        // the elements are not replied, the handler method is void to the binding
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        future.completeExceptionally(t);
+    }
+
+    @Override
+    public void onComplete() {
+        future.complete(null);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.dedup;
+
+/**
+ * The store of the consumed events, consulted by the event handler methods to suppress the
+ * redelivered events, e.g. after the rebalances. The events are marked only once succeeded, so
+ * the failed events are still executed on redelivery.
+ */
+public interface EventDedupStore {
+
+    /**
+     * Check whether the event is consumed by the consumer
+     * @param eventSeq the event id
+     * @param consumerKey the consumer key, distinct per event handler
+     * @return whether the event is a duplicate
+     */
+    boolean isDuplicate(String eventSeq, String consumerKey);
+
+    /**
+     * Mark the event consumed by the consumer
+     * @param eventSeq the event id
+     * @param consumerKey the consumer key, distinct per event handler
+     */
+    void markConsumed(String eventSeq, String consumerKey);
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.dedup;
+
+import com.xiaomai.event.utils.HashUtils;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+
+/**
+ * The in-memory {@link EventDedupStore} of the 128-bit hashes of the event id and the consumer
+ * key, kept in two rotating generations of open addressing {@code long[]} tables. The current
+ * generation is rotated to the previous one once the window elapses or it is full, so an id is
+ * remembered for at least one window unless the capacity is exceeded, and the memory is bounded
+ * to about 64 bytes per id of the capacity. The tables are striped with a lock per stripe.
+ */
+public class MemoryEventDedupStore implements EventDedupStore {
+
+    private static final int STRIPES = 16;
+
+    private static final long SEED_HIGH = 0x9E3779B97F4A7C15L;
+
+    private static final long SEED_LOW = 0xC2B2AE3D27D4EB4FL;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final long windowMillis;
+
+    /**
+     * Construct the store
+     * @param capacity the max count of the ids of each generation
+     * @param windowMillis the window of each generation in milliseconds
+     */
+    public MemoryEventDedupStore(int capacity, long windowMillis) {
+        Assert.isTrue(capacity > 0, "the capacity must be positive");
+        Assert.isTrue(windowMillis > 0, "the window must be positive");
+        this.windowMillis = windowMillis;
+        int stripeCapacity = Math.max(64, (capacity + STRIPES - 1) / STRIPES);
+        // keep the load factor under 0.75 for the short probes
+        int slots = Integer.highestOneBit(stripeCapacity * 4 / 3) << 1;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity, slots, now);
+        }
+    }
+
+    @Override
+    public boolean isDuplicate(String eventSeq, String consumerKey) {
+        long high = hash(eventSeq, consumerKey, SEED_HIGH);
+        long low = hash(eventSeq, consumerKey, SEED_LOW);
+        return stripes[(int) (low & (STRIPES - 1))].contains(high, low, System.currentTimeMillis());
+    }
+
+    @Override
+    public void markConsumed(String eventSeq, String consumerKey) {
+        long high = hash(eventSeq, consumerKey, SEED_HIGH);
+        long low = hash(eventSeq, consumerKey, SEED_LOW);
+        stripes[(int) (low & (STRIPES - 1))].add(high, low, System.currentTimeMillis());
+    }
+
+    private static long hash(String eventSeq, String consumerKey, long seed) {
+        long h = seed;
+        for (int i = 0; i < eventSeq.length(); i++) {
+            h = (h ^ eventSeq.charAt(i)) * 0x100000001B3L;
+        }
+        h = HashUtils.fmix64(h) ^ seed;
+        for (int i = 0; i < consumerKey.length(); i++) {
+            h = (h ^ consumerKey.charAt(i)) * 0x100000001B3L;
+        }
+        return HashUtils.fmix64(h);
+    }
+
+    private final class Stripe {
+
+        private final int maxSize;
+
+        private final int mask;
+
+        /**
+         * The pairs of the high and the low hashes, both 0 if the slot is empty
+         */
+        private long[] current;
+
+        private long[] previous;
+
+        private int size;
+
+        private long rotatedAt;
+
+        Stripe(int maxSize, int slots, long now) {
+            this.maxSize = maxSize;
+            this.mask = slots - 1;
+            this.current = new long[slots * 2];
+            this.previous = new long[slots * 2];
+            this.rotatedAt = now;
+        }
+
+        synchronized boolean contains(long high, long low, long now) {
+            rotateIfExpired(now);
+            return find(current, high, low) || find(previous, high, low);
+        }
+
+        synchronized void add(long high, long low, long now) {
+            rotateIfExpired(now);
+            if (high == 0 && low == 0) {
+                high = 1;
+            }
+            int index = (int) high & mask;
+            while (current[index * 2] != 0 || current[index * 2 + 1] != 0) {
+                if (current[index * 2] == high && current[index * 2 + 1] == low) {
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            current[index * 2] = high;
+            current[index * 2 + 1] = low;
+            if (++size >= maxSize) {
+                rotate(now);
+            }
+        }
+
+        private boolean find(long[] table, long high, long low) {
+            if (high == 0 && low == 0) {
+                high = 1;
+            }
+            int index = (int) high & mask;
+            while (table[index * 2] != 0 || table[index * 2 + 1] != 0) {
+                if (table[index * 2] == high && table[index * 2 + 1] == low) {
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        private void rotateIfExpired(long now) {
+            if (now - rotatedAt < windowMillis) {
+                return;
+            }
+            if (now - rotatedAt >= 2 * windowMillis) {
+                // both generations are expired
+                Arrays.fill(current, 0L);
+                size = 0;
+            }
+            rotate(now);
+        }
+
+        private void rotate(long now) {
+            long[] table = previous;
+            Arrays.fill(table, 0L);
+            previous = current;
+            current = table;
+            size = 0;
+            rotatedAt = now;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.enums;
+
+/**
+ * The policy when the write-behind queue of the lifecycle is full
+ */
+public enum EventBackpressurePolicy {
+    /**
+     * block the caller until the queue has room
+     */
+    BLOCK,
+    /**
+     * drop the lifecycle transition and count it
+     */
+    DROP,
+    /**
+     * persist the lifecycle transition in the caller thread
+     */
+    CALLER_RUNS,
+    ;
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.enums;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * The execution mode of the event handler methods
+ */
+public enum EventExecutionMode {
+    /**
+     * inherit the global mode by {@code scs.event.executor.mode}, which is {@link #DIRECT} if absent
+     */
+    DEFAULT,
+    /**
+     * invoke the handler method in the consumer thread
+     */
+    DIRECT,
+    /**
+     * invoke the handler method in a virtual thread per event, the events of the same key are
+     * still invoked in order. It falls back to a bounded platform thread pool before JDK 21.
+     */
+    VIRTUAL_THREAD,
+    ;
+
+    /**
+     * Resolve the effective mode of the event handler
+     * @param globalMode the global mode, e.g. {@code virtual-thread}
+     * @return the effective mode, never {@link #DEFAULT}
+     */
+    public EventExecutionMode resolve(String globalMode) {
+        if (this != DEFAULT) {
+            return this;
+        }
+        if (!StringUtils.hasText(globalMode)) {
+            return DIRECT;
+        }
+        EventExecutionMode mode = valueOf(globalMode.trim().toUpperCase().replace('-', '_'));
+        return mode == DEFAULT ? DIRECT : mode;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.executor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The completion of the handling of one message, which may be deferred by the asynchronous
+ * handler methods invoked in the handling. The callback, e.g. the acknowledgment of the
+ * offset, runs once the handling returns and all the deferred parts complete.
+ */
+public final class EventCompletion {
+
+    private static final ThreadLocal<EventCompletion> CURRENT = new ThreadLocal<>();
+
+    private static final Runnable NOOP = () -> { };
+
+    /**
+     * The pending parts, including the handling itself
+     */
+    private final AtomicInteger pending = new AtomicInteger(1);
+
+    private final Runnable callback;
+
+    /**
+     * Construct the completion
+     * @param callback the callback run on the completion
+     */
+    public EventCompletion(Runnable callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Run the handling with the completion bound to the current thread
+     * @param handling the handling of the message
+     */
+    public void run(Runnable handling) {
+        EventCompletion previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            handling.run();
+        } finally {
+            if (null == previous) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            release();
+        }
+    }
+
+    /**
+     * Defer the completion bound to the current thread
+     * @return the callback to complete the deferred part, a no-op if no completion is bound
+     */
+    public static Runnable defer() {
+        EventCompletion completion = CURRENT.get();
+        if (null == completion) {
+            return NOOP;
+        }
+        completion.pending.incrementAndGet();
+        AtomicBoolean completed = new AtomicBoolean();
+        return () -> {
+            if (completed.compareAndSet(false, true)) {
+                completion.release();
+            }
+        };
+    }
+
+    private void release() {
+        if (pending.decrementAndGet() == 0) {
+            callback.run();
+        }
+    }
+}
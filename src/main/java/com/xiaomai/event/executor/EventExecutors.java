@@ -0,0 +1,82 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.executor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The factory of the executors of the event handlers
+ */
+@Slf4j
+public final class EventExecutors {
+
+    private EventExecutors() {
+    }
+
+    /**
+     * Create the executor starting a virtual thread per task, which is resolved reflectively as
+     * the baseline is JDK 8. Before JDK 21 it falls back to a platform thread pool, the tasks
+     * queued are bounded by the in-flight permits of the submitters.
+     * @param name the name of the executor, used in the thread names
+     * @param platformThreads the thread count of the fallback pool
+     * @return the executor
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String name, int platformThreads) {
+        String prefix = "scs-event-" + name + "-";
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method factoryMethod = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            log.info("Created the virtual thread executor {}", name);
+            return (ExecutorService) factoryMethod.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.info("Virtual threads are not available, falling back to {} platform threads for executor {}",
+                platformThreads, name);
+        }
+        return newPlatformThreadPool(name, platformThreads);
+    }
+
+    /**
+     * Create the pool of the daemon platform threads, the idle threads time out
+     * @param name the name of the executor, used in the thread names
+     * @param threads the thread count
+     * @return the executor
+     */
+    public static ExecutorService newPlatformThreadPool(String name, int threads) {
+        String prefix = "scs-event-" + name + "-";
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, prefix + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.executor;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The executor keeping the order of the tasks of the same key on top of an unordered executor,
+ * e.g. the virtual thread per task executor. Each task is chained after the tail task of its
+ * key, and the tasks of different keys run in parallel. The submission blocks when the
+ * in-flight tasks, including the chained ones, reach the cap.
+ */
+public class KeyOrderedExecutor {
+
+    private final Executor executor;
+
+    private final Semaphore inFlightPermits;
+
+    /**
+     * The tail task of each key, removed once the tail completes
+     */
+    private final ConcurrentHashMap<Object, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    /**
+     * Construct the executor
+     * @param executor the executor running the tasks
+     * @param maxInFlight the max count of the in-flight tasks
+     */
+    public KeyOrderedExecutor(Executor executor, int maxInFlight) {
+        Assert.isTrue(maxInFlight > 0, "the max in-flight count must be positive");
+        this.executor = executor;
+        this.inFlightPermits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Execute the task after the previous tasks of the same key complete
+     * @param key the key of the task
+     * @param task the task to execute
+     * @return the future completed with the task
+     * @throws InterruptedException if interrupted while waiting for the in-flight permit
+     */
+    public CompletableFuture<Void> execute(Object key, Runnable task) throws InterruptedException {
+        inFlightPermits.acquire();
+        final CompletableFuture<Void> future;
+        try {
+            // the failure of the previous task does not break the chain
+            future = tails.compute(key, (k, tail) -> null == tail
+                ? CompletableFuture.runAsync(task, executor)
+                : tail.handle((r, t) -> null).thenRunAsync(task, executor));
+        } catch (RuntimeException e) {
+            inFlightPermits.release();
+            throw e;
+        }
+        future.whenComplete((r, t) -> {
+            tails.remove(key, future);
+            inFlightPermits.release();
+        });
+        return future;
+    }
+
+    /**
+     * Get the count of the keys with the in-flight tasks
+     * @return the key count
+     */
+    public int getKeyCount() {
+        return tails.size();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.executor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executor spreading the tasks across the worker lanes by the key, each lane is a single
+ * thread, so the tasks of the same key are executed in the submitted order while the tasks of
+ * different keys run in parallel. The lane queues are bounded and the submission blocks when
+ * the lane is full, which throttles the consumer instead of buffering without limit.
+ */
+@Slf4j
+public class KeyShardedEventExecutor {
+
+    private static final long CLOSE_TIMEOUT_MS = 10_000L;
+
+    private final String name;
+
+    private final Lane[] lanes;
+
+    private volatile boolean closed;
+
+    /**
+     * Construct the executor
+     * @param name the name of the executor, used in the lane thread names
+     * @param laneCount the count of the worker lanes
+     * @param laneCapacity the max count of the pending tasks of each lane
+     */
+    public KeyShardedEventExecutor(String name, int laneCount, int laneCapacity) {
+        Assert.isTrue(laneCount > 0, "the lane count must be positive");
+        Assert.isTrue(laneCapacity > 0, "the lane capacity must be positive");
+        this.name = name;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane("scs-event-lane-" + name + "-" + i, laneCapacity);
+            lanes[i].start();
+        }
+    }
+
+    /**
+     * Execute the task in the lane of the key, blocks until the lane accepts the task
+     * @param key the key of the task
+     * @param task the task to execute
+     */
+    public void execute(Object key, Runnable task) {
+        if (closed) {
+            throw new RejectedExecutionException("the executor " + name + " is closed");
+        }
+        try {
+            lanes[laneOf(key)].queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while submitting to the executor " + name, e);
+        }
+    }
+
+    /**
+     * Get the lane index of the key
+     * @param key the key of the task
+     * @return the lane index
+     */
+    public int laneOf(Object key) {
+        int hash = null == key ? 0 : key.hashCode();
+        // spread the high bits as the hash map does, the keys often differ in the tail only
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * Get the count of the worker lanes
+     * @return the lane count
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Stop accepting the tasks, and wait for the lanes to drain the pending tasks
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // the lanes are not interrupted, the running handlers complete and the pending tasks are drained
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+        for (Lane lane : lanes) {
+            try {
+                lane.join(Math.max(1L, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (lane.isAlive() || !lane.queue.isEmpty()) {
+                log.warn("The lane {} of executor {} is closed with {} pending tasks", lane.getName(), name,
+                    lane.queue.size());
+            }
+        }
+    }
+
+    private class Lane extends Thread {
+
+        private final BlockingQueue<Runnable> queue;
+
+        Lane(String threadName, int capacity) {
+            super(threadName);
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!closed || !queue.isEmpty()) {
+                Runnable task;
+                try {
+                    task = closed ? queue.poll() : queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (null == task) {
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Task failed in lane {}", getName(), t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.executor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Track the in-flight offsets of one partition, the offsets complete in any order across the
+ * lanes, but only the contiguous completed prefix is acknowledged, so the committed offset
+ * never skips an event still in process. A failed offset stays pending while the binder retries
+ * it, and completes once the next offset arrives, i.e. the retries are exhausted and the record
+ * is recovered by the binder. The tracker acknowledges nothing after the partition is revoked.
+ */
+public class PartitionOffsetTracker {
+
+    private final Deque<PendingOffset> pendingOffsets = new ArrayDeque<>();
+
+    private long lastAcknowledged = -1L;
+
+    private boolean revoked;
+
+    /**
+     * Register the offset received, in the partition order. The offset redelivered by the binder
+     * retry reuses its pending offset, and the failed offsets before it are completed.
+     * @param offset the offset of the event
+     * @param acknowledgment the callback committing the offset
+     * @return the pending offset to complete
+     */
+    public synchronized PendingOffset register(long offset, Runnable acknowledgment) {
+        PendingOffset retried = null;
+        boolean exhausted = false;
+        for (PendingOffset pendingOffset : pendingOffsets) {
+            if (!pendingOffset.failed) {
+                continue;
+            }
+            if (pendingOffset.offset == offset) {
+                retried = pendingOffset;
+            } else if (pendingOffset.offset < offset) {
+                // the binder moved on, so the retries of the offset are exhausted
+                pendingOffset.failed = false;
+                pendingOffset.done = true;
+                exhausted = true;
+            }
+        }
+        if (exhausted) {
+            acknowledgeCompleted();
+        }
+        if (null != retried) {
+            retried.failed = false;
+            return retried;
+        }
+        PendingOffset pendingOffset = new PendingOffset(offset, acknowledgment);
+        pendingOffsets.addLast(pendingOffset);
+        return pendingOffset;
+    }
+
+    /**
+     * Mark the offset failed, it stays pending until retried or the next offset is registered
+     * @param pendingOffset the failed offset
+     */
+    public synchronized void fail(PendingOffset pendingOffset) {
+        if (!pendingOffset.done) {
+            pendingOffset.failed = true;
+        }
+    }
+
+    /**
+     * Complete the offset, and acknowledge the highest offset of the contiguous completed prefix
+     * @param pendingOffset the completed offset
+     */
+    public synchronized void complete(PendingOffset pendingOffset) {
+        pendingOffset.done = true;
+        acknowledgeCompleted();
+    }
+
+    /**
+     * Revoke the partition, the pending offsets are dropped and nothing is acknowledged since
+     */
+    public synchronized void revoke() {
+        revoked = true;
+        pendingOffsets.clear();
+    }
+
+    /**
+     * Check whether the partition is revoked
+     * @return whether revoked
+     */
+    public synchronized boolean isRevoked() {
+        return revoked;
+    }
+
+    private void acknowledgeCompleted() {
+        if (revoked) {
+            return;
+        }
+        PendingOffset committable = null;
+        while (!pendingOffsets.isEmpty() && pendingOffsets.peekFirst().done) {
+            committable = pendingOffsets.pollFirst();
+        }
+        if (null != committable) {
+            // acknowledged in the lock, the acknowledgments of a partition must be in order
+            committable.acknowledgment.run();
+            lastAcknowledged = committable.offset;
+        }
+    }
+
+    /**
+     * Get the count of the offsets not acknowledged
+     * @return the pending count
+     */
+    public synchronized int getPendingCount() {
+        return pendingOffsets.size();
+    }
+
+    /**
+     * Get the last acknowledged offset
+     * @return the offset, -1 if none acknowledged
+     */
+    public synchronized long getLastAcknowledged() {
+        return lastAcknowledged;
+    }
+
+    /**
+     * The offset in process
+     */
+    public static final class PendingOffset {
+
+        private final long offset;
+
+        private final Runnable acknowledgment;
+
+        private boolean done;
+
+        private boolean failed;
+
+        private PendingOffset(long offset, Runnable acknowledgment) {
+            this.offset = offset;
+            this.acknowledgment = acknowledgment;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+}
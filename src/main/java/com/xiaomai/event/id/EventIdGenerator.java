@@ -0,0 +1,34 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.id;
+
+/**
+ * The SPI to generate the event id, i.e., the {@code scs.EventId} header, when the event is issued.
+ *
+ * The generator is shared by all the producer threads, the implementations should be
+ * thread-safe and should *NOT* block.
+ */
+@FunctionalInterface
+public interface EventIdGenerator {
+
+    /**
+     * Generate a new event id
+     * @return the generated event id
+     */
+    String generate();
+}
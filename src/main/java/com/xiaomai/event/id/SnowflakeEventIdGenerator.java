@@ -0,0 +1,81 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.id;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Snowflake-style 64-bit id generator: 41 bits of millisecond timestamp since
+ * 2020-01-01T00:00:00Z, 10 bits of node id and 12 bits of sequence.
+ *
+ * The timestamp and the sequence are advanced together with a single CAS, so the generator
+ * never blocks: when the sequence of a millisecond is exhausted or the clock moves backwards,
+ * the logical timestamp simply runs ahead of the wall clock until it catches up.
+ */
+public class SnowflakeEventIdGenerator implements EventIdGenerator {
+
+    private static final long EPOCH = 1577836800000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private final long nodeId;
+
+    /**
+     * The last issued (timestamp << SEQUENCE_BITS | sequence)
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * CONSTRUCTOR
+     * @param nodeId the node id, unique among the producer instances, in [0, 1023]
+     */
+    public SnowflakeEventIdGenerator(int nodeId) {
+        Assert.isTrue(nodeId >= 0 && nodeId <= MAX_NODE_ID, "the node id should be in [0, " + MAX_NODE_ID + "]");
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String generate() {
+        return Long.toString(nextId());
+    }
+
+    /**
+     * Generate the next 64-bit id
+     * @return the generated id
+     */
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH;
+            long prev = state.get();
+            long next = now > (prev >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : prev + 1;
+            if (state.compareAndSet(prev, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+                    | (nodeId << SEQUENCE_BITS)
+                    | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+}
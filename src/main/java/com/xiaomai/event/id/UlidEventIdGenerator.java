@@ -0,0 +1,67 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.id;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The ULID generator: 48 bits of millisecond timestamp followed by 80 random bits, encoded
+ * as 26 chars of Crockford's base32. The ids are lexicographically ordered by the issue
+ * time at millisecond granularity, which keeps the audit table indexes append-mostly.
+ */
+public class UlidEventIdGenerator implements EventIdGenerator {
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private static final int ULID_LENGTH = 26;
+
+    private static final int TIMESTAMP_LENGTH = 10;
+
+    @Override
+    public String generate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return encode(System.currentTimeMillis(), random.nextLong() & 0xFFFFL, random.nextLong());
+    }
+
+    /**
+     * Encode the ULID
+     * @param timestamp the millisecond timestamp, the lower 48 bits are used
+     * @param randomHi the higher 16 random bits
+     * @param randomLo the lower 64 random bits
+     * @return the encoded ULID
+     */
+    static String encode(long timestamp, long randomHi, long randomLo) {
+        char[] chars = new char[ULID_LENGTH];
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            chars[i] = ENCODING[(int) ((timestamp >>> (45 - 5 * i)) & 31)];
+        }
+        for (int i = 0; i < ULID_LENGTH - TIMESTAMP_LENGTH; i++) {
+            int shift = 75 - 5 * i;
+            long bits;
+            if (shift >= 64) {
+                bits = randomHi >>> (shift - 64);
+            } else if (shift + 5 <= 64) {
+                bits = randomLo >>> shift;
+            } else {
+                bits = (randomLo >>> shift) | (randomHi << (64 - shift));
+            }
+            chars[TIMESTAMP_LENGTH + i] = ENCODING[(int) (bits & 31)];
+        }
+        return new String(chars);
+    }
+}
@@ -17,15 +17,14 @@
 
 package com.xiaomai.event.lifecycle;
 
-import com.google.common.collect.ImmutableList;
 import com.xiaomai.event.annotation.EventMeta;
+import com.xiaomai.event.utils.EventClassDescriptor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * Created by baihe on 2017/8/22.
@@ -44,17 +43,15 @@ public abstract class AbstractEventLifecycle extends DefaultEventLifecycle imple
 
     @Override
     public boolean onExecute(String eventSeq, String consumerKey, Class<?> payloadClass) {
-        EventMeta eventMeta = getEventMeta(payloadClass);
+        EventClassDescriptor descriptor = EventClassDescriptor.of(payloadClass);
         super.onExecute(eventSeq, consumerKey, payloadClass);
 
-        if (!eventMeta.enableAudit())
+        if (!descriptor.isAudited())
             return true;
-        if (eventMeta.consumerWhitelist().length > 0) {
-            if (!ImmutableList.copyOf(eventMeta.consumerWhitelist()).contains(consumerKey)) {
-                return false;
-            }
+        if (!descriptor.isConsumerAllowed(consumerKey)) {
+            return false;
         }
-        return preExecute(eventSeq, consumerKey, eventMeta, payloadClass);
+        return preExecute(eventSeq, consumerKey, descriptor.getEventMeta(), payloadClass);
     }
 
     /**
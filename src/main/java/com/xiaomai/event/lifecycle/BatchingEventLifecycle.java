@@ -0,0 +1,235 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.lifecycle;
+
+import com.xiaomai.event.annotation.EventMeta;
+import com.xiaomai.event.enums.EventBackpressurePolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The write-behind lifecycle, which queues the event records and the status transitions and
+ * persists them through {@link IBatchEventLifecycle} once the batch size is reached or the flush
+ * interval elapses, so the hot path costs one multi-row write per batch instead of one per event.
+ * The event ids are generated by the lifecycle itself. The queue is flushed on destroy.
+ *
+ * The event attributes are copied when queued, while the payload is queued by reference and
+ * persisted up to a flush interval later, so the payloads *MUST NOT* be mutated after triggered.
+ *
+ * The flushes are serialized, and a flush on the caller thread drains the queue first, so the
+ * {@link IBatchEventLifecycle} is never called concurrently and the transitions keep their order.
+ */
+@Slf4j
+public class BatchingEventLifecycle extends AbstractEventLifecycle implements DisposableBean {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 10_000L;
+
+    private final IBatchEventLifecycle batchLifecycle;
+
+    private final int batchSize;
+
+    private final long flushIntervalMillis;
+
+    private final EventBackpressurePolicy backpressurePolicy;
+
+    private final BlockingQueue<Object> queue;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final Thread flusher;
+
+    /**
+     * The lock of draining the queue and flushing the drained transitions
+     */
+    private final Object flushLock = new Object();
+
+    private volatile boolean closed;
+
+    public BatchingEventLifecycle(IBatchEventLifecycle batchLifecycle, int batchSize, long flushIntervalMillis,
+        int queueCapacity, EventBackpressurePolicy backpressurePolicy) {
+        Assert.notNull(batchLifecycle, "batchLifecycle cannot be null");
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        Assert.isTrue(flushIntervalMillis > 0, "flushIntervalMillis must be positive");
+        Assert.isTrue(queueCapacity >= batchSize, "queueCapacity must not be less than batchSize");
+        Assert.notNull(backpressurePolicy, "backpressurePolicy cannot be null");
+        this.batchLifecycle = batchLifecycle;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.backpressurePolicy = backpressurePolicy;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.flusher = new Thread(this::flushLoop, "scs-event-lifecycle-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public String onRecord(EventMeta eventMeta, String producerKey, Object payload, Map<String, Object> eventAttrs, String channel) {
+        String eventSeq = nextEventId();
+        // copy the attributes, the caller may reuse the map once triggered
+        Map<String, Object> attrs = null == eventAttrs ? null : new HashMap<>(eventAttrs);
+        enqueue(new EventLifecycleRecord(eventSeq, eventMeta, producerKey, payload, attrs, channel,
+            System.currentTimeMillis()));
+        return eventSeq;
+    }
+
+    @Override
+    public boolean preExecute(String eventSeq, String consumerKey, EventMeta eventMeta, Class<?> payloadClass) {
+        return batchLifecycle.preExecute(eventSeq, consumerKey, eventMeta, payloadClass);
+    }
+
+    @Override
+    public void onSuccess(String eventSeq, String consumerKey, Class<?> payloadClass) {
+        super.onSuccess(eventSeq, consumerKey, payloadClass);
+        enqueue(new EventLifecycleTransition(eventSeq, consumerKey, payloadClass, true, null,
+            System.currentTimeMillis()));
+    }
+
+    @Override
+    public void onFail(String eventSeq, String consumerKey, Class<?> payloadClass, Exception e) {
+        super.onFail(eventSeq, consumerKey, payloadClass, e);
+        enqueue(new EventLifecycleTransition(eventSeq, consumerKey, payloadClass, false, e,
+            System.currentTimeMillis()));
+    }
+
+    /**
+     * Get the count of the lifecycle transitions dropped by {@link EventBackpressurePolicy#DROP}
+     * or by the failed flushes
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void enqueue(Object transition) {
+        if (closed) {
+            flushWithQueued(transition);
+            return;
+        }
+        if (queue.offer(transition)) {
+            if (queue.size() >= batchSize) {
+                LockSupport.unpark(flusher);
+            }
+            return;
+        }
+        switch (backpressurePolicy) {
+            case BLOCK:
+                try {
+                    queue.put(transition);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    flushWithQueued(transition);
+                }
+                break;
+            case DROP:
+                if (droppedCount.getAndIncrement() % batchSize == 0) {
+                    log.warn("the lifecycle queue is full, {} transitions dropped", droppedCount.get());
+                }
+                break;
+            default:
+                flushWithQueued(transition);
+        }
+    }
+
+    /**
+     * Flush the transition on the caller thread after the queued ones, so a status never lands
+     * before the record queued ahead of it
+     * @param transition the transition not queued
+     */
+    private void flushWithQueued(Object transition) {
+        synchronized (flushLock) {
+            List<Object> batch = new ArrayList<>(queue.size() + 1);
+            queue.drainTo(batch);
+            batch.add(transition);
+            flush(batch);
+        }
+    }
+
+    private void flushLoop() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            // wait without taking the transitions, they are drained under the flush lock only
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+            long wait;
+            while (!closed && queue.size() < batchSize && (wait = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+                if (Thread.interrupted()) {
+                    closed = true;
+                }
+            }
+            synchronized (flushLock) {
+                queue.drainTo(batch, batchSize);
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private void flush(List<Object> batch) {
+        List<EventLifecycleRecord> records = new ArrayList<>();
+        List<EventLifecycleTransition> transitions = new ArrayList<>();
+        for (Object transition : batch) {
+            if (transition instanceof EventLifecycleRecord) {
+                records.add((EventLifecycleRecord) transition);
+            } else {
+                transitions.add((EventLifecycleTransition) transition);
+            }
+        }
+        // the records first, so a status never lands before its record
+        if (!records.isEmpty()) {
+            try {
+                batchLifecycle.onRecordBatch(records);
+            } catch (Exception e) {
+                droppedCount.addAndGet(records.size());
+                log.error("failed to persist {} event records", records.size(), e);
+            }
+        }
+        if (!transitions.isEmpty()) {
+            try {
+                batchLifecycle.onStatusBatch(transitions);
+            } catch (Exception e) {
+                droppedCount.addAndGet(transitions.size());
+                log.error("failed to persist {} event status transitions", transitions.size(), e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        // the flusher drains the queue and exits within a flush interval
+        closed = true;
+        LockSupport.unpark(flusher);
+        flusher.join(CLOSE_TIMEOUT_MILLIS);
+        if (flusher.isAlive()) {
+            log.warn("the lifecycle flusher is not terminated in {}ms, {} transitions left",
+                CLOSE_TIMEOUT_MILLIS, queue.size());
+        }
+    }
+}
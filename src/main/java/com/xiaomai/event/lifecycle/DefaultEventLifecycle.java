@@ -18,21 +18,62 @@
 package com.xiaomai.event.lifecycle;
 
 import com.xiaomai.event.annotation.EventMeta;
-import com.xiaomai.event.utils.StructuredArguments;
-import java.util.UUID;
-import lombok.extern.slf4j.Slf4j;
+import com.xiaomai.event.id.EventIdGenerator;
+import com.xiaomai.event.id.RandomUuidEventIdGenerator;
+import com.xiaomai.event.trace.EventTracePhase;
+import com.xiaomai.event.trace.EventTraceSink;
+import com.xiaomai.event.trace.LoggingEventTraceSink;
 
 import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 /**
  * Created by baihe on 2017/8/23.
  */
-@Slf4j
 public class DefaultEventLifecycle implements IEventLifecycle {
 
+    /**
+     * The generator of the event ids
+     */
+    private EventIdGenerator eventIdGenerator = new RandomUuidEventIdGenerator();
+
+    /**
+     * The sink of the lifecycle marks
+     */
+    private EventTraceSink eventTraceSink = new LoggingEventTraceSink();
+
+    /**
+     * Set the generator of the event ids, the {@link EventIdGenerator} bean is injected if provided
+     * @param eventIdGenerator the event id generator
+     */
+    @Autowired(required = false)
+    public void setEventIdGenerator(EventIdGenerator eventIdGenerator) {
+        Assert.notNull(eventIdGenerator, "eventIdGenerator cannot be null");
+        this.eventIdGenerator = eventIdGenerator;
+    }
+
+    /**
+     * Set the sink of the lifecycle marks, the {@link EventTraceSink} bean is injected if provided
+     * @param eventTraceSink the event trace sink
+     */
+    @Autowired(required = false)
+    public void setEventTraceSink(EventTraceSink eventTraceSink) {
+        Assert.notNull(eventTraceSink, "eventTraceSink cannot be null");
+        this.eventTraceSink = eventTraceSink;
+    }
+
+    /**
+     * Generate a new event id, the subclass can call it to assign the id of the recorded event
+     * @return the generated event id
+     */
+    protected String nextEventId() {
+        return eventIdGenerator.generate();
+    }
+
     public String makeRecord(EventMeta eventMeta, String producerKey, Object payload, Map<String, Object> eventAttrs, String channel) {
-        return UUID.randomUUID().toString();
+        return nextEventId();
     }
 
     @Override
@@ -42,38 +83,38 @@ public class DefaultEventLifecycle implements IEventLifecycle {
             eventSeq = makeRecord(eventMeta, producerKey, payload, eventAttrs, channel);
         }
 
-        log.info("Mark event {}, {}, {} pending",
-            StructuredArguments.keyValue("eventId", eventSeq),
-            StructuredArguments.keyValue("producerKey", producerKey),
-            StructuredArguments.keyValue("eventPayloadClass", payload.getClass().getName()));
+        trace(EventTracePhase.PENDING, eventSeq, producerKey, payload.getClass(), null);
 
         return eventSeq;
     }
 
     @Override
     public boolean onExecute(String eventSeq, String consumerKey, Class<?> payloadClass) {
-        log.info("Mark event {}, {}, {} executing",
-                StructuredArguments.keyValue("eventId", eventSeq),
-                StructuredArguments.keyValue("consumerKey", consumerKey),
-                StructuredArguments.keyValue("eventPayloadClass", payloadClass.getName()));
+        trace(EventTracePhase.EXECUTING, eventSeq, consumerKey, payloadClass, null);
         return true;
     }
 
     @Override
     public void onSuccess(String eventSeq, String consumerKey, Class<?> payloadClass) {
-        log.info("Mark event {}, {}, {} committed",
-                StructuredArguments.keyValue("eventId", eventSeq),
-                StructuredArguments.keyValue("consumerKey", consumerKey),
-                StructuredArguments.keyValue("eventPayloadClass", payloadClass.getName()));
+        trace(EventTracePhase.COMMITTED, eventSeq, consumerKey, payloadClass, null);
     }
 
     @Override
     public void onFail(String eventSeq, String consumerKey, Class<?> payloadClass, Exception e) {
-        log.info("Mark event {}, {}, {} failed, {}",
-                StructuredArguments.keyValue("eventId", eventSeq),
-                StructuredArguments.keyValue("consumerKey", consumerKey),
-                StructuredArguments.keyValue("eventPayloadClass", payloadClass.getName()),
-                StructuredArguments.keyValue("reason", e.getMessage()));
+        trace(EventTracePhase.FAILED, eventSeq, consumerKey, payloadClass, e);
+    }
+
+    /**
+     * Record the lifecycle mark to the trace sink
+     * @param phase the marked phase
+     * @param eventSeq the event id
+     * @param actor the producer key or the consumer key
+     * @param payloadClass the event payload class
+     * @param e the failure, null if not failed
+     */
+    protected void trace(EventTracePhase phase, String eventSeq, String actor, Class<?> payloadClass, Exception e) {
+        long now = System.currentTimeMillis();
+        eventTraceSink.record(phase, eventSeq, null, payloadClass, actor, null, 0L, now, now, e);
     }
 
 
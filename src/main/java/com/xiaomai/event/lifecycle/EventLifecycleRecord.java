@@ -0,0 +1,44 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.lifecycle;
+
+import com.xiaomai.event.annotation.EventMeta;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * The event record made by the producer, persisted in batches by {@link IBatchEventLifecycle}
+ */
+@Getter
+@AllArgsConstructor
+public class EventLifecycleRecord {
+    private final String eventSeq;
+
+    private final EventMeta eventMeta;
+
+    private final String producerKey;
+
+    private final Object payload;
+
+    private final Map<String, Object> eventAttrs;
+
+    private final String channel;
+
+    private final long recordTime;
+}
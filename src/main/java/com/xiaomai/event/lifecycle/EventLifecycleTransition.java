@@ -0,0 +1,45 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.lifecycle;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The status transition of a consumed event, persisted in batches by {@link IBatchEventLifecycle}
+ */
+@Getter
+@AllArgsConstructor
+public class EventLifecycleTransition {
+    private final String eventSeq;
+
+    private final String consumerKey;
+
+    private final Class<?> payloadClass;
+
+    /**
+     * whether the event is consumed successfully
+     */
+    private final boolean succeeded;
+
+    /**
+     * the failure, null if succeeded
+     */
+    private final Exception error;
+
+    private final long transitionTime;
+}
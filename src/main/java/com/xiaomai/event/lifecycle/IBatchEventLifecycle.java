@@ -0,0 +1,52 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.lifecycle;
+
+import com.xiaomai.event.annotation.EventMeta;
+
+import java.util.List;
+
+/**
+ * The batch persistence of the event lifecycle, driven by {@link BatchingEventLifecycle}
+ */
+public interface IBatchEventLifecycle {
+
+    /**
+     * 批量持久化生产者产生的事件记录, 在事件触发后异步调用.
+     * 记录的事件属性为触发时的副本, 而 payload 为触发时的对象引用, 触发后不得再修改 payload
+     * @param records 事件记录, 按产生顺序排列
+     */
+    void onRecordBatch(List<EventLifecycleRecord> records);
+
+    /**
+     * 批量持久化消费者的消费状态
+     * @param transitions 消费状态变更, 按发生顺序排列
+     */
+    void onStatusBatch(List<EventLifecycleTransition> transitions);
+
+    /**
+     * 审计事件被消费前调用, 同步执行
+     * @param eventSeq 事件序列号
+     * @param consumerKey 消费者标识
+     * @param eventMeta 事件元信息
+     * @param payloadClass 消费事件类
+     * @return 是否需要执行
+     */
+    default boolean preExecute(String eventSeq, String consumerKey, EventMeta eventMeta, Class<?> payloadClass) {
+        return true;
+    }
+}
@@ -20,6 +20,8 @@ package com.xiaomai.event.lifecycle;
 
 
 import com.xiaomai.event.annotation.EventMeta;
+import com.xiaomai.event.utils.EventClassDescriptor;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -28,7 +30,7 @@ import java.util.Map;
 public interface IEventLifecycle {
 
     default EventMeta getEventMeta(Class<?> payloadClass) {
-        return payloadClass.getDeclaredAnnotation(EventMeta.class);
+        return EventClassDescriptor.of(payloadClass).getEventMeta();
     }
 
     /**
@@ -60,6 +62,21 @@ public interface IEventLifecycle {
      */
     boolean onExecute(String eventSeq, String consumerKey, Class<?> payloadClass);
 
+    /**
+     * 当消费者开始批量消费时调用, 默认逐个调用 {@link #onExecute}
+     * @param eventSeqs 事件序列号列表
+     * @param consumerKey 消费者标识
+     * @param payloadClass 消费事件类
+     * @return 各事件是否需要执行, 与事件序列号一一对应
+     */
+    default boolean[] onExecuteBatch(List<String> eventSeqs, String consumerKey, Class<?> payloadClass) {
+        boolean[] needExecs = new boolean[eventSeqs.size()];
+        for (int i = 0; i < needExecs.length; i++) {
+            needExecs[i] = onExecute(eventSeqs.get(i), consumerKey, payloadClass);
+        }
+        return needExecs;
+    }
+
     /**
      * 当消费者消费成功时调用
      * @param eventSeq 事件序列号
@@ -68,6 +85,18 @@ public interface IEventLifecycle {
      */
     void onSuccess(String eventSeq, String consumerKey, Class<?> payloadClass);
 
+    /**
+     * 当消费者批量消费成功时调用, 默认逐个调用 {@link #onSuccess}
+     * @param eventSeqs 事件序列号列表
+     * @param consumerKey 消费者标识
+     * @param payloadClass 消费事件类
+     */
+    default void onSuccessBatch(List<String> eventSeqs, String consumerKey, Class<?> payloadClass) {
+        for (String eventSeq : eventSeqs) {
+            onSuccess(eventSeq, consumerKey, payloadClass);
+        }
+    }
+
     /**
      * 当消费者消费失败时调用
      * @param eventSeq 事件序列号
@@ -0,0 +1,91 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.metrics;
+
+/**
+ * The facade of the event metrics, which records nothing by default. The
+ * {@link MicrometerEventMetrics} is provided when micrometer is on the classpath.
+ */
+public interface EventMetrics {
+
+    String OUTCOME_SUCCESS = "success";
+
+    String OUTCOME_FAILURE = "failure";
+
+    String OUTCOME_DUPLICATE = "duplicate";
+
+    String OUTCOME_SKIPPED = "skipped";
+
+    /**
+     * The metrics recording nothing
+     */
+    EventMetrics NOOP = new EventMetrics() {
+    };
+
+    /**
+     * Record the latency of an event trigger in the producer
+     * @param eventName the event name
+     * @param channel the event channel, null for the default channel
+     * @param outcome the trigger outcome
+     * @param durationNanos the trigger latency in nanoseconds
+     */
+    default void recordTrigger(String eventName, String channel, String outcome, long durationNanos) {
+    }
+
+    /**
+     * Record the end-to-end lag from the event trigger to the start of the handling
+     * @param eventName the event name
+     * @param consumerKey the consumer key
+     * @param lagMillis the lag in milliseconds
+     */
+    default void recordLag(String eventName, String consumerKey, long lagMillis) {
+    }
+
+    /**
+     * Record the execution time of an event handler method
+     * @param eventName the event name
+     * @param consumerKey the consumer key
+     * @param outcome the handling outcome
+     * @param durationMillis the execution time in milliseconds
+     */
+    default void recordExecution(String eventName, String consumerKey, String outcome, long durationMillis) {
+    }
+
+    /**
+     * Record a retry of an event handler method
+     * @param eventName the event name
+     * @param consumerKey the consumer key
+     */
+    default void recordRetry(String eventName, String consumerKey) {
+    }
+
+    /**
+     * Record a trigger of a detected hot key
+     * @param eventName the event name
+     * @param salted whether the hot key is salted over the sub-partitions
+     */
+    default void recordHotKey(String eventName, boolean salted) {
+    }
+
+    /**
+     * Record the partition count of a destination
+     * @param destination the destination
+     * @param partitionCount the partition count
+     */
+    default void recordPartitionCount(String destination, int partitionCount) {
+    }
+}
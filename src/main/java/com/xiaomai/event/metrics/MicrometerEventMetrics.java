@@ -0,0 +1,180 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The event metrics published to micrometer, and the meters are cached by their tags so the hot
+ * paths skip the builders. The timers publish no percentiles nor histograms unless configured,
+ * for each of them multiplies the series per event, consumer and outcome, they may be enabled
+ * here or per meter by a {@code MeterFilter} or {@code management.metrics.distribution.*}.
+ */
+public class MicrometerEventMetrics implements EventMetrics {
+
+    public static final String TRIGGER_TIMER = "scs.event.trigger";
+
+    public static final String LAG_TIMER = "scs.event.lag";
+
+    public static final String EXECUTION_TIMER = "scs.event.execution";
+
+    public static final String RETRY_COUNTER = "scs.event.retries";
+
+    public static final String HOT_KEY_COUNTER = "scs.event.hot-keys";
+
+    public static final String PARTITION_GAUGE = "scs.event.partitions";
+
+    private final MeterRegistry registry;
+
+    /**
+     * The client side percentiles of the timers, not aggregatable across the instances
+     */
+    private final double[] percentiles;
+
+    /**
+     * Whether the timers publish the histogram buckets for the server side percentiles
+     */
+    private final boolean percentileHistogram;
+
+    private final Map<MeterKey, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<MeterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> partitionCounts = new ConcurrentHashMap<>();
+
+    public MicrometerEventMetrics(MeterRegistry registry) {
+        this(registry, new double[0], false);
+    }
+
+    /**
+     * Construct the metrics with the distribution statistics of the timers
+     * @param registry the meter registry
+     * @param percentiles the client side percentiles to publish, empty for none
+     * @param percentileHistogram whether to publish the percentile histograms
+     */
+    public MicrometerEventMetrics(MeterRegistry registry, double[] percentiles, boolean percentileHistogram) {
+        this.registry = registry;
+        this.percentiles = percentiles.clone();
+        this.percentileHistogram = percentileHistogram;
+    }
+
+    @Override
+    public void recordTrigger(String eventName, String channel, String outcome, long durationNanos) {
+        timer(TRIGGER_TIMER, "event", eventName, "channel", null == channel ? "" : channel, outcome)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordLag(String eventName, String consumerKey, long lagMillis) {
+        // the clocks of the producer and the consumer may skew
+        timer(LAG_TIMER, "event", eventName, "consumer", consumerKey, null)
+            .record(Math.max(0L, lagMillis), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void recordExecution(String eventName, String consumerKey, String outcome, long durationMillis) {
+        timer(EXECUTION_TIMER, "event", eventName, "consumer", consumerKey, outcome)
+            .record(durationMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void recordRetry(String eventName, String consumerKey) {
+        counter(RETRY_COUNTER, "event", eventName, "consumer", consumerKey).increment();
+    }
+
+    @Override
+    public void recordHotKey(String eventName, boolean salted) {
+        counter(HOT_KEY_COUNTER, "event", eventName, "salted", String.valueOf(salted)).increment();
+    }
+
+    @Override
+    public void recordPartitionCount(String destination, int partitionCount) {
+        partitionCounts.computeIfAbsent(destination, d -> {
+            AtomicInteger count = new AtomicInteger();
+            Gauge.builder(PARTITION_GAUGE, count, AtomicInteger::get)
+                .tag("destination", d)
+                .register(registry);
+            return count;
+        }).set(partitionCount);
+    }
+
+    private Counter counter(String name, String tag1, String value1, String tag2, String value2) {
+        MeterKey key = new MeterKey(name, value1, value2);
+        Counter counter = counters.get(key);
+        if (null == counter) {
+            counter = counters.computeIfAbsent(key, k -> Counter.builder(name)
+                .tags(tag1, value1, tag2, value2)
+                .register(registry));
+        }
+        return counter;
+    }
+
+    private Timer timer(String name, String tag1, String value1, String tag2, String value2, String outcome) {
+        MeterKey key = new MeterKey(name, value1, value2, outcome);
+        Timer timer = timers.get(key);
+        if (null == timer) {
+            timer = timers.computeIfAbsent(key, k -> {
+                Tags tags = Tags.of(tag1, value1, tag2, value2);
+                Timer.Builder builder = Timer.builder(name)
+                    .tags(null == outcome ? tags : tags.and("outcome", outcome));
+                if (percentiles.length > 0) {
+                    builder.publishPercentiles(percentiles);
+                }
+                if (percentileHistogram) {
+                    builder.publishPercentileHistogram();
+                }
+                return builder.register(registry);
+            });
+        }
+        return timer;
+    }
+
+    /**
+     * The key of the cached meters
+     */
+    private static final class MeterKey {
+
+        private final String[] values;
+
+        private final int hash;
+
+        MeterKey(String... values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof MeterKey && Arrays.equals(values, ((MeterKey) o).values));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.partition;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.xiaomai.event.utils.HashUtils;
+import com.xiaomai.event.utils.PartitionRouteUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.stream.binder.PartitionSelectorStrategy;
+import org.springframework.util.Assert;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The partition selector with the jump consistent hash over the partition count of
+ * {@link PartitionRouteUtil}, so adding partitions only moves the keys to the new partitions,
+ * about {@code 1 - N/M} of them when growing from N to M.
+ *
+ * With the migration mode, the keys sent within the drain window are pinned to their previous
+ * partitions after the partition count changes, until they stay idle for the drain window or
+ * the migration ends, so their events in flight are not reordered.
+ */
+@Slf4j
+public class ConsistentHashPartitionSelector implements PartitionSelectorStrategy {
+
+    private final boolean migration;
+
+    private final long drainMillis;
+
+    private final long maxMigrationMillis;
+
+    private final long maxTrackedKeys;
+
+    private final Map<String, DestinationState> destinationStates = new ConcurrentHashMap<>();
+
+    /**
+     * Create the selector without the migration mode
+     */
+    public ConsistentHashPartitionSelector() {
+        this(false, 0L, 0L, 0L);
+    }
+
+    /**
+     * Create the selector
+     * @param migration whether to pin the keys in flight when the partition count changes
+     * @param drainMillis the idle time after which a pinned key moves to its new partition
+     * @param maxMigrationMillis the max time of a migration, after which all the keys move
+     * @param maxTrackedKeys the max count of the recently sent keys tracked per destination
+     */
+    public ConsistentHashPartitionSelector(boolean migration, long drainMillis, long maxMigrationMillis,
+        long maxTrackedKeys) {
+        Assert.isTrue(!migration || (drainMillis > 0 && maxMigrationMillis > 0 && maxTrackedKeys > 0),
+            "the drain window, the max migration time and the max tracked keys must be positive");
+        this.migration = migration;
+        this.drainMillis = drainMillis;
+        this.maxMigrationMillis = maxMigrationMillis;
+        this.maxTrackedKeys = maxTrackedKeys;
+    }
+
+    /**
+     * Select the partition with the {@link PartitionRouteUtil}
+     * @param key the partition key object
+     * @param partitionCount the partition count
+     * @return the selected partition index
+     */
+    @Override
+    public int selectPartition(Object key, int partitionCount) {
+        int partCount = PartitionRouteUtil.getPartitionCount(key);
+        long hash = HashUtils.fmix64(key.hashCode());
+        if (!migration) {
+            return jumpHash(hash, partCount);
+        }
+        DestinationState state = destinationStates.get(PartitionRouteUtil.extractDestination(key));
+        if (null == state) {
+            state = destinationStates.computeIfAbsent(PartitionRouteUtil.extractDestination(key),
+                d -> new DestinationState(partCount));
+        }
+        return state.select(key, hash, partCount);
+    }
+
+    /**
+     * The jump consistent hash of Lamping and Veach
+     * @param key the 64-bit key hash
+     * @param buckets the bucket count
+     * @return the bucket in {@code [0, buckets)}
+     */
+    static int jumpHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    /**
+     * The migration state of a destination
+     */
+    private final class DestinationState {
+
+        /**
+         * The keys sent recently, expired after the drain window
+         */
+        private final Cache<Object, Boolean> recentKeys = CacheBuilder.newBuilder()
+            .expireAfterWrite(drainMillis, TimeUnit.MILLISECONDS)
+            .maximumSize(maxTrackedKeys)
+            .build();
+
+        private volatile int partitionCount;
+
+        private volatile int previousCount;
+
+        private volatile long migrationDeadline;
+
+        DestinationState(int partitionCount) {
+            this.partitionCount = partitionCount;
+        }
+
+        int select(Object key, long hash, int partCount) {
+            if (partCount != partitionCount) {
+                startMigration(partCount);
+            }
+            if (migrationDeadline > 0L) {
+                if (System.currentTimeMillis() < migrationDeadline) {
+                    if (null != recentKeys.getIfPresent(key)) {
+                        // still in flight on the previous partition, keep it there
+                        recentKeys.put(key, Boolean.TRUE);
+                        return jumpHash(hash, previousCount);
+                    }
+                    // the keys moved are not tracked until the migration ends
+                    return jumpHash(hash, partCount);
+                }
+                endMigration();
+            }
+            recentKeys.put(key, Boolean.TRUE);
+            return jumpHash(hash, partCount);
+        }
+
+        private synchronized void startMigration(int partCount) {
+            if (partCount == partitionCount) {
+                return;
+            }
+            log.info("partition count changed from {} to {}, migrating the keys in flight", partitionCount, partCount);
+            long now = System.currentTimeMillis();
+            if (partCount > partitionCount) {
+                // the previous partitions still exist only when growing, and the keys pinned by
+                // a migration in progress stay on their partitions, so its previous count is kept
+                if (migrationDeadline == 0L || now >= migrationDeadline) {
+                    previousCount = partitionCount;
+                }
+                migrationDeadline = now + maxMigrationMillis;
+            } else {
+                migrationDeadline = 0L;
+                recentKeys.invalidateAll();
+            }
+            partitionCount = partCount;
+        }
+
+        private synchronized void endMigration() {
+            if (migrationDeadline > 0L && System.currentTimeMillis() >= migrationDeadline) {
+                migrationDeadline = 0L;
+                log.info("partition migration finished, {} keys pinned at the end", recentKeys.size());
+            }
+        }
+    }
+}
@@ -62,6 +62,11 @@ public class EventPartitionHandler {
 
 	private final String destination;
 
+	/**
+	 * The partitioner of the unkeyed events opted in to the sticky partitioning
+	 */
+	private final StickyPartitioner stickyPartitioner;
+
 	/**
 	 * Construct a {@code PartitionHandler}.
 	 * @param evaluationContext evaluation context for binder
@@ -72,6 +77,20 @@ public class EventPartitionHandler {
 	 */
 	public EventPartitionHandler(String destination, EvaluationContext evaluationContext,
 			ProducerProperties properties, ConfigurableListableBeanFactory beanFactory) {
+		this(destination, evaluationContext, properties, beanFactory,
+				new StickyPartitioner(StickyPartitioner.DEFAULT_BATCH_SIZE, StickyPartitioner.DEFAULT_LINGER_MS));
+	}
+
+	/**
+	 * Construct a {@code PartitionHandler}.
+	 * @param evaluationContext evaluation context for binder
+	 * @param properties binder properties
+	 * @param beanFactory instance of ConfigurableListableBeanFactory
+	 * @param stickyPartitioner the partitioner of the unkeyed events opted in to the sticky partitioning
+	 */
+	public EventPartitionHandler(String destination, EvaluationContext evaluationContext,
+			ProducerProperties properties, ConfigurableListableBeanFactory beanFactory,
+			StickyPartitioner stickyPartitioner) {
 		this.destination = destination;
 		this.beanFactory = beanFactory;
 		this.evaluationContext = evaluationContext;
@@ -79,7 +98,9 @@ public class EventPartitionHandler {
 		this.partitionKeyExtractorStrategy = this.getPartitionKeyExtractorStrategy(properties);
 		this.partitionSelectorStrategy = this.getPartitionSelectorStrategy(properties);
 		this.partitionCount = this.producerProperties.getPartitionCount();
-
+		this.stickyPartitioner = stickyPartitioner;
+		// follow the partition count refreshed from the binder
+		PartitionRouteUtil.registerPartitionHandler(destination, this);
 	}
 
 	/**
@@ -109,6 +130,12 @@ public class EventPartitionHandler {
 	public int determinePartition(Message<?> message) {
 		Object key = extractKey(message);
 
+		if (key instanceof PartitionRoute && ((PartitionRoute) key).isSticky()
+				&& this.producerProperties.getPartitionSelectorExpression() == null) {
+			// the unkeyed event has no order to keep, stick to the partition of the current batch
+			return this.stickyPartitioner.partition(PartitionRouteUtil.getPartitionCount(this.destination));
+		}
+
 		int partition;
 		if (this.producerProperties.getPartitionSelectorExpression() != null) {
 			partition = this.producerProperties.getPartitionSelectorExpression()
@@ -9,9 +9,19 @@ import org.springframework.messaging.Message;
  */
 public class HeaderPartitionKeyExtractor implements PartitionKeyExtractorStrategy {
 
+    /**
+     * Extract the partition key from the event key header
+     * @param message the event message
+     * @return the {@link PartitionRoute} of the event, or the raw header if it is not routed
+     */
     @Override
     public Object extractKey(Message<?> message) {
         Object partitionKey = message.getHeaders().get(EventBuiltinAttr.EVENT_KEY.getKey());
+        if (partitionKey instanceof String) {
+            // the event is re-published with the wire form
+            PartitionRoute route = PartitionRoute.parse((String) partitionKey);
+            return route != null ? route : partitionKey;
+        }
         return partitionKey;
     }
 }
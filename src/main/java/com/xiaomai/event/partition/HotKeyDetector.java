@@ -0,0 +1,127 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.partition;
+
+import com.xiaomai.event.utils.HashUtils;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The producer side heavy hitter detector of the partition keys of a destination. The key
+ * frequencies are estimated by a Count-Min Sketch, which is halved every window so the old
+ * traffic fades out. A key is hot when its estimate reaches both the min count and the ratio
+ * of all the keys counted in the window.
+ */
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+
+    private static final int WIDTH = 4096;
+
+    /**
+     * The max count of the hot keys exposed for the monitoring
+     */
+    private static final int MAX_HOT_KEYS = 64;
+
+    private final double hotRatio;
+
+    private final long minCount;
+
+    private final long windowMillis;
+
+    private final AtomicLongArray counters = new AtomicLongArray(DEPTH * WIDTH);
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong windowEnd;
+
+    private final Map<String, Long> hotKeys = new ConcurrentHashMap<>();
+
+    /**
+     * CONSTRUCTOR
+     * @param hotRatio the min ratio of a hot key in all the keys of the window
+     * @param minCount the min count of a hot key in the window
+     * @param windowMillis the window to halve the counts in milliseconds
+     */
+    public HotKeyDetector(double hotRatio, long minCount, long windowMillis) {
+        Assert.isTrue(hotRatio > 0 && hotRatio <= 1, "hotRatio must be in (0, 1]");
+        Assert.isTrue(windowMillis > 0, "windowMillis must be positive");
+        this.hotRatio = hotRatio;
+        this.minCount = Math.max(1L, minCount);
+        this.windowMillis = windowMillis;
+        this.windowEnd = new AtomicLong(System.currentTimeMillis() + windowMillis);
+    }
+
+    /**
+     * Count the key and check whether it is hot
+     * @param key the partition key
+     * @return whether the key is hot
+     */
+    public boolean record(String key) {
+        long now = System.currentTimeMillis();
+        long end = windowEnd.get();
+        if (now >= end && windowEnd.compareAndSet(end, now + windowMillis)) {
+            decay();
+        }
+
+        long h1 = HashUtils.fmix64(key.hashCode());
+        long h2 = h1 >>> 32 | 1L;
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = i * WIDTH + (int) ((h1 + i * h2) & (WIDTH - 1));
+            estimate = Math.min(estimate, counters.incrementAndGet(index));
+        }
+        long count = total.incrementAndGet();
+
+        if (estimate < minCount || estimate < hotRatio * count) {
+            return false;
+        }
+        if (hotKeys.size() < MAX_HOT_KEYS || hotKeys.containsKey(key)) {
+            hotKeys.put(key, estimate);
+        }
+        return true;
+    }
+
+    /**
+     * Get the hot keys detected in the recent windows
+     * @return the hot keys with their estimated counts
+     */
+    public Map<String, Long> getHotKeys() {
+        return Collections.unmodifiableMap(new HashMap<>(hotKeys));
+    }
+
+    /**
+     * Halve the counts, the races with the recording only skew the estimates slightly
+     */
+    private void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value = counters.get(i);
+            if (value > 0) {
+                counters.addAndGet(i, -(value >>> 1));
+            }
+        }
+        total.addAndGet(-(total.get() >>> 1));
+        // the keys still hot are put back on their next record
+        hotKeys.clear();
+    }
+}
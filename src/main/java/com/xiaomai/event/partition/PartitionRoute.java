@@ -0,0 +1,204 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.partition;
+
+import org.springframework.util.Assert;
+
+/**
+ * The immutable partition route of an event, i.e., the destination and the raw partition key
+ * of the event payload, which is carried in the {@code scs.EventKey} header on the producer side.
+ *
+ * The hash code is precomputed and equals to the hash code of the wire form
+ * {@code <destination>::<key>}, so the partition selection is the same as the legacy
+ * string encoded partition key while no string is built or split per message.
+ *
+ * A hot key spread over the sub-partitions is salted for the partition selection only, its hash
+ * code is the one of {@code <destination>::<key>#<salt>}, while the wire form keeps the raw key.
+ */
+public final class PartitionRoute {
+
+    /**
+     * The delimiter of the destination and the key in the wire form
+     */
+    public static final String WIRE_DELIM = "::";
+
+    /**
+     * The delimiter of a salted key and its salt in the hashed form
+     */
+    public static final String SALT_DELIM = "#";
+
+    private static final int NO_SALT = -1;
+
+    private static final int WIRE_DELIM_HASH_SUFFIX = WIRE_DELIM.charAt(0) * 31 + WIRE_DELIM.charAt(1);
+
+    private final String destination;
+
+    private final String key;
+
+    private final int hash;
+
+    /**
+     * The salt of the partition selection, {@link #NO_SALT} if not salted
+     */
+    private final int salt;
+
+    /**
+     * Whether the event is unkeyed and routed by the sticky partitioner, not carried in the wire form
+     */
+    private final boolean sticky;
+
+    /**
+     * The lazily cached wire form, racy single-check is safe for the immutable string
+     */
+    private String wireForm;
+
+    private PartitionRoute(String destination, String key, boolean sticky) {
+        this(destination, key, sticky, NO_SALT);
+    }
+
+    private PartitionRoute(String destination, String key, boolean sticky, int salt) {
+        this.destination = destination;
+        this.key = key;
+        this.salt = salt;
+        this.hash = wireHash(destination, salt == NO_SALT ? key : key + SALT_DELIM + salt);
+        this.sticky = sticky;
+    }
+
+    /**
+     * Create the partition route
+     * @param destination the destination of the event binding
+     * @param payloadKey the raw partition key extracted from the payload
+     * @return the partition route
+     */
+    public static PartitionRoute of(String destination, Object payloadKey) {
+        Assert.notNull(destination, "the destination of partition route cannot be null");
+        return new PartitionRoute(destination, String.valueOf(payloadKey), false);
+    }
+
+    /**
+     * Create the partition route of an unkeyed event, which is routed by the sticky partitioner
+     * @param destination the destination of the event binding
+     * @param payloadKey the fallback key of the event payload
+     * @return the sticky partition route
+     */
+    public static PartitionRoute sticky(String destination, Object payloadKey) {
+        Assert.notNull(destination, "the destination of partition route cannot be null");
+        return new PartitionRoute(destination, String.valueOf(payloadKey), true);
+    }
+
+    /**
+     * Salt the route to select another sub-partition of the key, the event key is not changed
+     * @param salt the non-negative salt
+     * @return the salted partition route
+     */
+    public PartitionRoute salted(int salt) {
+        Assert.isTrue(salt >= 0, "the salt of partition route must not be negative");
+        return new PartitionRoute(destination, key, sticky, salt);
+    }
+
+    /**
+     * Parse the partition route from its wire form
+     * @param wireForm the wire form {@code <destination>::<key>}
+     * @return the parsed partition route, or null if the wire form is not delimited
+     */
+    public static PartitionRoute parse(String wireForm) {
+        int index = wireForm.indexOf(WIRE_DELIM);
+        if (index < 0) {
+            return null;
+        }
+        PartitionRoute route = new PartitionRoute(wireForm.substring(0, index),
+            wireForm.substring(index + WIRE_DELIM.length()), false);
+        route.wireForm = wireForm;
+        return route;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isSticky() {
+        return sticky;
+    }
+
+    public boolean isSalted() {
+        return salt != NO_SALT;
+    }
+
+    /**
+     * Get the wire form of the route to carry in the message header
+     * @return the wire form {@code <destination>::<key>}
+     */
+    public String toWireForm() {
+        String wire = this.wireForm;
+        if (wire == null) {
+            wire = destination + WIRE_DELIM + key;
+            this.wireForm = wire;
+        }
+        return wire;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PartitionRoute)) {
+            return false;
+        }
+        PartitionRoute that = (PartitionRoute) o;
+        return hash == that.hash && salt == that.salt && destination.equals(that.destination) && key.equals(that.key);
+    }
+
+    @Override
+    public String toString() {
+        return toWireForm();
+    }
+
+    /**
+     * Compute {@code (destination + "::" + key).hashCode()} without the concatenation
+     * @param destination the destination
+     * @param key the raw key
+     * @return the hash code of the wire form
+     */
+    private static int wireHash(String destination, String key) {
+        int prefixHash = destination.hashCode() * 31 * 31 + WIRE_DELIM_HASH_SUFFIX;
+        return prefixHash * pow31(key.length()) + key.hashCode();
+    }
+
+    private static int pow31(int exponent) {
+        int result = 1;
+        int base = 31;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+            exponent >>= 1;
+        }
+        return result;
+    }
+}
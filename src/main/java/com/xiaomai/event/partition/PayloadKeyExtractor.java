@@ -0,0 +1,207 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.partition;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * The precompiled partition key extractor of the event payload class declared with
+ * {@link com.xiaomai.event.annotation.EventMeta#partitionOn()}.
+ *
+ * The field getters are resolved into {@link MethodHandle}s once, primitive fields are
+ * appended without boxing, and the key is joined in a reusable thread-local builder.
+ * The extracted key is the same as joining the non-null field values with {@code "-"}.
+ */
+public final class PayloadKeyExtractor {
+
+    private static final char DELIM_PARTITION_KEY = '-';
+
+    private static final int MAX_REUSED_BUILDER_CAPACITY = 1024;
+
+    private static final ThreadLocal<StringBuilder> KEY_BUILDER =
+        ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    private final Class<?> payloadClass;
+
+    private final FieldAppender[] appenders;
+
+    private final MethodHandle singleStringGetter;
+
+    private PayloadKeyExtractor(Class<?> payloadClass, FieldAppender[] appenders, MethodHandle singleStringGetter) {
+        this.payloadClass = payloadClass;
+        this.appenders = appenders;
+        this.singleStringGetter = singleStringGetter;
+    }
+
+    /**
+     * Compile the key extractor of the payload class
+     * @param payloadClass the event payload class
+     * @param fieldNames the partition fields
+     * @return the compiled extractor
+     */
+    public static PayloadKeyExtractor compile(Class<?> payloadClass, String[] fieldNames) {
+        Assert.notEmpty(fieldNames, "partition fields of " + payloadClass.getName() + " cannot be empty");
+        FieldAppender[] appenders = new FieldAppender[fieldNames.length];
+        MethodHandle singleStringGetter = null;
+        try {
+            for (int i = 0; i < fieldNames.length; i++) {
+                Field field = ReflectionUtils.findField(payloadClass, fieldNames[i]);
+                Assert.state(null != field, "partition field [" + fieldNames[i] + "] not found on class "
+                    + payloadClass.getName());
+                ReflectionUtils.makeAccessible(field);
+                MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+                appenders[i] = compileAppender(field.getType(), getter);
+                if (fieldNames.length == 1 && String.class.equals(field.getType())) {
+                    singleStringGetter = getter.asType(MethodType.methodType(String.class, Object.class));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("failed to access partition fields of class " + payloadClass.getName(), e);
+        }
+        return new PayloadKeyExtractor(payloadClass, appenders, singleStringGetter);
+    }
+
+    /**
+     * Extract the partition key from the payload
+     * @param payload the event payload
+     * @return the partition key
+     */
+    public String extract(Object payload) {
+        try {
+            if (singleStringGetter != null) {
+                String key = (String) singleStringGetter.invokeExact(payload);
+                return key != null ? key : "";
+            }
+            StringBuilder builder = KEY_BUILDER.get();
+            builder.setLength(0);
+            boolean appended = false;
+            for (FieldAppender appender : appenders) {
+                int mark = builder.length();
+                if (appended) {
+                    builder.append(DELIM_PARTITION_KEY);
+                }
+                if (appender.appendTo(payload, builder)) {
+                    appended = true;
+                } else {
+                    builder.setLength(mark);
+                }
+            }
+            String key = builder.toString();
+            if (builder.capacity() > MAX_REUSED_BUILDER_CAPACITY) {
+                KEY_BUILDER.remove();
+            }
+            return key;
+        } catch (Throwable ex) {
+            ReflectionUtils.rethrowRuntimeException(ex);
+            throw new IllegalStateException("failed to extract partition key of class " + payloadClass.getName(), ex);
+        }
+    }
+
+    /**
+     * Compile the appender of the field value with its *EXACT* getter type
+     * @param type the field type
+     * @param getter the field getter
+     * @return the field appender
+     */
+    private static FieldAppender compileAppender(Class<?> type, MethodHandle getter) {
+        if (int.class.equals(type) || short.class.equals(type) || byte.class.equals(type)) {
+            MethodHandle handle = getter.asType(MethodType.methodType(int.class, Object.class));
+            return (payload, builder) -> {
+                builder.append((int) handle.invokeExact(payload));
+                return true;
+            };
+        }
+        if (long.class.equals(type)) {
+            MethodHandle handle = getter.asType(MethodType.methodType(long.class, Object.class));
+            return (payload, builder) -> {
+                builder.append((long) handle.invokeExact(payload));
+                return true;
+            };
+        }
+        if (boolean.class.equals(type)) {
+            MethodHandle handle = getter.asType(MethodType.methodType(boolean.class, Object.class));
+            return (payload, builder) -> {
+                builder.append((boolean) handle.invokeExact(payload));
+                return true;
+            };
+        }
+        if (char.class.equals(type)) {
+            MethodHandle handle = getter.asType(MethodType.methodType(char.class, Object.class));
+            return (payload, builder) -> {
+                builder.append((char) handle.invokeExact(payload));
+                return true;
+            };
+        }
+        if (double.class.equals(type)) {
+            MethodHandle handle = getter.asType(MethodType.methodType(double.class, Object.class));
+            return (payload, builder) -> {
+                builder.append((double) handle.invokeExact(payload));
+                return true;
+            };
+        }
+        if (float.class.equals(type)) {
+            MethodHandle handle = getter.asType(MethodType.methodType(float.class, Object.class));
+            return (payload, builder) -> {
+                builder.append((float) handle.invokeExact(payload));
+                return true;
+            };
+        }
+        if (String.class.equals(type)) {
+            MethodHandle handle = getter.asType(MethodType.methodType(String.class, Object.class));
+            return (payload, builder) -> {
+                String value = (String) handle.invokeExact(payload);
+                if (value == null) {
+                    return false;
+                }
+                builder.append(value);
+                return true;
+            };
+        }
+        MethodHandle handle = getter.asType(MethodType.methodType(Object.class, Object.class));
+        return (payload, builder) -> {
+            Object value = (Object) handle.invokeExact(payload);
+            if (value == null) {
+                return false;
+            }
+            builder.append(value);
+            return true;
+        };
+    }
+
+    /**
+     * The appender of a single partition field
+     */
+    @FunctionalInterface
+    private interface FieldAppender {
+
+        /**
+         * Append the field value of the payload to the key builder
+         * @param payload the event payload
+         * @param builder the key builder
+         * @return false if the field value is null and nothing appended
+         * @throws Throwable the possible exception of the getter
+         */
+        boolean appendTo(Object payload, StringBuilder builder) throws Throwable;
+    }
+}
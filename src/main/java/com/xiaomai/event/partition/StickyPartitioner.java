@@ -0,0 +1,107 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.partition;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The sticky partitioner of the unkeyed events of a destination, which keeps sending to one
+ * partition until the sticky batch is full or lingers out, then rotates to another partition,
+ * so the producer fills bigger batches with fewer requests.
+ */
+public class StickyPartitioner {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    public static final long DEFAULT_LINGER_MS = 100L;
+
+    private final int batchSize;
+
+    private final long lingerMillis;
+
+    private volatile Slot slot;
+
+    /**
+     * CONSTRUCTOR
+     * @param batchSize the max count of the events sent to a partition before rotating
+     * @param lingerMillis the max time to stick to a partition before rotating
+     */
+    public StickyPartitioner(int batchSize, long lingerMillis) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        Assert.isTrue(lingerMillis > 0, "lingerMillis must be positive");
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+    }
+
+    /**
+     * Select the partition of the next unkeyed event
+     * @param partitionCount the partition count of the destination
+     * @return the selected partition index
+     */
+    public int partition(int partitionCount) {
+        Slot current = this.slot;
+        if (null != current && current.partitionCount == partitionCount
+            && System.currentTimeMillis() < current.deadline && current.sent.incrementAndGet() <= batchSize) {
+            return current.partition;
+        }
+        return rotate(current, partitionCount);
+    }
+
+    private synchronized int rotate(Slot seen, int partitionCount) {
+        Slot current = this.slot;
+        if (current != seen && null != current && current.partitionCount == partitionCount) {
+            // rotated by another sender already
+            current.sent.incrementAndGet();
+            return current.partition;
+        }
+        int partition = 0;
+        if (null == seen || seen.partition >= partitionCount) {
+            partition = ThreadLocalRandom.current().nextInt(partitionCount);
+        } else if (partitionCount > 1) {
+            // never stick to the same partition twice in a row
+            partition = ThreadLocalRandom.current().nextInt(partitionCount - 1);
+            if (partition >= seen.partition) {
+                partition++;
+            }
+        }
+        this.slot = new Slot(partition, partitionCount, System.currentTimeMillis() + lingerMillis);
+        return partition;
+    }
+
+    /**
+     * The partition stuck to
+     */
+    private static final class Slot {
+
+        private final int partition;
+
+        private final int partitionCount;
+
+        private final long deadline;
+
+        private final AtomicInteger sent = new AtomicInteger(1);
+
+        Slot(int partition, int partitionCount, long deadline) {
+            this.partition = partition;
+            this.partitionCount = partitionCount;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -23,32 +23,48 @@ import com.xiaomai.event.utils.PartitionRouteUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
-import org.apache.kafka.clients.admin.DescribeTopicsResult;
 import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.common.KafkaFuture;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.cloud.stream.config.BinderProperties;
-import org.springframework.cloud.stream.provisioning.ProvisioningException;
-import org.springframework.core.env.Environment;
 import org.springframework.util.StringUtils;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
- * The kafka topic partition refresh job
+ * The kafka topic partition refresh job. One admin client is kept per binder, the destinations
+ * of each binder are described in one batched request, and the requests of all the binders are
+ * in flight together, so the refresh time barely grows with the event classes. A binder failing
+ * repeatedly is backed off exponentially and its admin client is recreated.
  * @author baihe
  */
 @Slf4j
-public class KafkaTopicPartitionRefreshJob implements InitializingBean {
+public class KafkaTopicPartitionRefreshJob implements InitializingBean, DisposableBean {
 
     private static final String TYPE_KAFKA = "kafka";
 
     private static final String SCS_BROKER_KEY = "spring.cloud.stream.kafka.binder.brokers";
 
+    /**
+     * the timeout of describing the topics of all the binders in a refresh
+     */
+    private static final long DESCRIBE_TIMEOUT_MILLIS = 5_000L;
+
+    /**
+     * the max back off of a failing binder
+     */
+    private static final long MAX_BACK_OFF_MILLIS = 300_000L;
+
     /**
      * the refresh interval
      * if 0 is set, the refresh routine is disabled
@@ -65,65 +81,126 @@ public class KafkaTopicPartitionRefreshJob implements InitializingBean {
      */
     private final EventBindingServiceProperties eventBindingServiceProperties;
 
+    /**
+     * the factory of the admin clients, replaceable with a mock one
+     */
+    private final Function<BinderProperties, AdminClient> adminClientFactory;
+
+    /**
+     * the long-lived admin clients of the kafka binders
+     */
+    private final Map<String, AdminClient> adminClients = new ConcurrentHashMap<>();
+
+    /**
+     * the back off of the failing binders
+     */
+    private final Map<String, BackOff> backOffs = new ConcurrentHashMap<>();
 
     /**
      * CONSTRUCTOR
      */
     public KafkaTopicPartitionRefreshJob(EventBindingServiceProperties eventBindingServiceProperties, int refreshInterval) {
+        this(eventBindingServiceProperties, refreshInterval,
+            binderProperties -> AdminClient.create(parseAdminClientProperties(binderProperties)));
+    }
+
+    /**
+     * CONSTRUCTOR
+     * @param eventBindingServiceProperties the event binding service properties
+     * @param refreshInterval the refresh interval in seconds, 0 to refresh at startup only
+     * @param adminClientFactory the factory of the admin client of a kafka binder
+     */
+    public KafkaTopicPartitionRefreshJob(EventBindingServiceProperties eventBindingServiceProperties, int refreshInterval,
+        Function<BinderProperties, AdminClient> adminClientFactory) {
         this.eventBindingServiceProperties = eventBindingServiceProperties;
         this.refreshInterval = refreshInterval;
-        this.executorService = Executors.newSingleThreadScheduledExecutor();
+        this.adminClientFactory = adminClientFactory;
+        this.executorService = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "scs-event-partition-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
      * heartbeat function to refresh the topic partitions
      */
-    private synchronized void refreshTopicPartitions() {
+    synchronized void refreshTopicPartitions() {
+        // group the destinations by the binder
+        Map<String, Set<String>> binderDestinations = new HashMap<>();
         EventBindingUtils.getEventProducerConfMap().forEach((eventPayloadClass, pconf) -> {
-          if (pconf.channels().length > 0) {
-              for (String channel: pconf.channels()) {
-                  String destination = EventBindingUtils.resolveDestination(eventPayloadClass, channel);
-                  int channelPartCount = getTopicPartition(destination, pconf.binder());
-                  PartitionRouteUtil.updateDestinationPartitionCount(destination, channelPartCount);
-              }
-          } else {
-              String destination = EventBindingUtils.resolveDestination(eventPayloadClass, null);
-              int partCount = getTopicPartition(destination, pconf.binder());
-              PartitionRouteUtil.updateDestinationPartitionCount(destination, partCount);
-          }
+            String binder = StringUtils.hasText(pconf.binder()) ? pconf.binder() : eventBindingServiceProperties.getDefaultBinder();
+            Set<String> destinations = binderDestinations.computeIfAbsent(String.valueOf(binder), b -> new LinkedHashSet<>());
+            if (pconf.channels().length > 0) {
+                for (String channel: pconf.channels()) {
+                    destinations.add(EventBindingUtils.resolveDestination(eventPayloadClass, channel));
+                }
+            } else {
+                destinations.add(EventBindingUtils.resolveDestination(eventPayloadClass, null));
+            }
         });
-    }
 
-    /**
-     * Get the partition count from the specified topic and binder
-     * @param topic the kafka topic
-     * @param binder the kafka binder name
-     * @return the partition count of the topic
-     */
-    private int getTopicPartition(String topic, String binder) {
-        BinderProperties binderProperties = eventBindingServiceProperties.getBinders()
-            .get(StringUtils.hasText(binder) ? binder : eventBindingServiceProperties.getDefaultBinder());
-        if (binderProperties != null && binderProperties.getType().equalsIgnoreCase(TYPE_KAFKA)) {
-            try (AdminClient adminClient = AdminClient.create(parseAdminClientProperties(binderProperties))) {
-                int partitions = 0;
-                DescribeTopicsResult describeTopicsResult = adminClient
-                  .describeTopics(Collections.singletonList(topic));
-                KafkaFuture<Map<String, TopicDescription>> all = describeTopicsResult.all();
-
-                Map<String, TopicDescription> topicDescriptions = null;
+        // send the describe requests of all the binders before waiting any of them
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, KafkaFuture<TopicDescription>>> binderFutures = new HashMap<>();
+        binderDestinations.forEach((binder, destinations) -> {
+            BinderProperties binderProperties = eventBindingServiceProperties.getBinders().get(binder);
+            if (binderProperties == null || !binderProperties.getType().equalsIgnoreCase(TYPE_KAFKA)) {
+                destinations.forEach(destination -> PartitionRouteUtil.updateDestinationPartitionCount(destination, 1));
+                return;
+            }
+            BackOff backOff = backOffs.get(binder);
+            if (null != backOff && now < backOff.nextAttempt) {
+                return;
+            }
+            try {
+                AdminClient adminClient = adminClients.computeIfAbsent(binder, b -> adminClientFactory.apply(binderProperties));
+                binderFutures.put(binder, adminClient.describeTopics(new ArrayList<>(destinations)).values());
+            } catch (Exception e) {
+                failed(binder, e);
+            }
+        });
+
+        long deadline = now + DESCRIBE_TIMEOUT_MILLIS;
+        binderFutures.forEach((binder, futures) -> {
+            int described = 0;
+            Exception failure = null;
+            for (Map.Entry<String, KafkaFuture<TopicDescription>> entry : futures.entrySet()) {
                 try {
-                    topicDescriptions = all.get(1, TimeUnit.SECONDS);
-                    TopicDescription topicDescription = topicDescriptions.get(topic);
-                    partitions = topicDescription.partitions().size();
+                    long timeout = Math.max(0L, deadline - System.currentTimeMillis());
+                    TopicDescription description = entry.getValue().get(timeout, TimeUnit.MILLISECONDS);
+                    PartitionRouteUtil.updateDestinationPartitionCount(entry.getKey(), description.partitions().size());
+                    described++;
                 } catch (Exception e) {
-//                    throw new ProvisioningException("Problems encountered with partitions finding", e);
-                    log.error("Problems encountered with partitions finding: ", e);
-                    partitions = 1;
+                    // keep the last known count of the topic
+                    log.warn("Problems encountered with partitions finding of {}: {}", entry.getKey(), e.toString());
+                    failure = e;
                 }
-                return partitions;
             }
+            if (described == 0 && null != failure) {
+                failed(binder, failure);
+            } else {
+                backOffs.remove(binder);
+            }
+        });
+    }
+
+    /**
+     * Back off the failing binder and recreate its admin client on the next attempt
+     * @param binder the binder name
+     * @param e the failure
+     */
+    private void failed(String binder, Exception e) {
+        BackOff backOff = backOffs.computeIfAbsent(binder, b -> new BackOff());
+        backOff.failures++;
+        long delay = Math.min(MAX_BACK_OFF_MILLIS, 1_000L << Math.min(backOff.failures, 20));
+        backOff.nextAttempt = System.currentTimeMillis() + delay;
+        AdminClient adminClient = adminClients.remove(binder);
+        if (null != adminClient) {
+            closeQuietly(adminClient);
         }
-        return 1;
+        log.error("Problems encountered with partitions finding of binder {}, {} failures, retry in {}ms: ",
+            binder, backOff.failures, delay, e);
     }
 
     /**
@@ -135,11 +212,42 @@ public class KafkaTopicPartitionRefreshJob implements InitializingBean {
         refreshTopicPartitions();
         // if the refresh heartbeat interval is set, refresh the topic partition periodically
         if (refreshInterval > 0) {
-            executorService.scheduleAtFixedRate(this::refreshTopicPartitions, 0,
-                refreshInterval, TimeUnit.SECONDS);
+            executorService.scheduleAtFixedRate(() -> {
+                try {
+                    refreshTopicPartitions();
+                } catch (Exception e) {
+                    // an exception would cancel the next runs
+                    log.error("Failed to refresh the topic partitions: ", e);
+                }
+            }, refreshInterval, refreshInterval, TimeUnit.SECONDS);
         }
     }
 
+    @Override
+    public void destroy() {
+        executorService.shutdownNow();
+        adminClients.values().forEach(KafkaTopicPartitionRefreshJob::closeQuietly);
+        adminClients.clear();
+    }
+
+    private static void closeQuietly(AdminClient adminClient) {
+        try {
+            adminClient.close();
+        } catch (Exception e) {
+            log.warn("Failed to close the admin client: {}", e.toString());
+        }
+    }
+
+    /**
+     * The back off state of a failing binder, accessed by the synchronized refresh only
+     */
+    private static final class BackOff {
+
+        private int failures;
+
+        private long nextAttempt;
+    }
+
     /**
      * Util function to transform the binder
      * @param binderProperties the given binder properties
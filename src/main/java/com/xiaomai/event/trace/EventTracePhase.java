@@ -0,0 +1,56 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.trace;
+
+/**
+ * The traced phases of an event
+ */
+public enum EventTracePhase {
+    /**
+     * the event is issued by the producer, marked by the lifecycle
+     */
+    PENDING,
+    /**
+     * the event is to be executed by the consumer, marked by the lifecycle
+     */
+    EXECUTING,
+    /**
+     * the event is executed, marked by the lifecycle
+     */
+    COMMITTED,
+    /**
+     * the event failed, marked by the lifecycle
+     */
+    FAILED,
+    /**
+     * the event is received by the handler method
+     */
+    RECEIVED,
+    /**
+     * the event is skipped by the handler method as a duplicate
+     */
+    DUPLICATE,
+    /**
+     * the handler method succeeded
+     */
+    HANDLED,
+    /**
+     * the handler method failed
+     */
+    HANDLE_FAILED,
+    ;
+}
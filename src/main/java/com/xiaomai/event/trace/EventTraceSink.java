@@ -0,0 +1,47 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.trace;
+
+/**
+ * The sink of the event traces, e.g. the lifecycle marks and the handler logs. The callers pass
+ * the fields as they are, so the formatting is up to the sink, which may defer it out of the
+ * consumer thread.
+ */
+public interface EventTraceSink {
+
+    /**
+     * Record the trace of an event
+     * @param phase the traced phase
+     * @param eventSeq the event id
+     * @param eventKey the event key, null if not known in the phase
+     * @param payloadClass the event payload class
+     * @param actor the producer key or the consumer key of the lifecycle, or the handler method
+     * @param producer the producer app, null if not known in the phase
+     * @param triggerTime the trigger time of the event, 0 if not known in the phase
+     * @param startTime the start time of the phase
+     * @param endTime the end time of the phase, the same as the start time if instant
+     * @param error the failure of the phase, null if not failed
+     */
+    void record(EventTracePhase phase, String eventSeq, String eventKey, Class<?> payloadClass, String actor,
+                String producer, long triggerTime, long startTime, long endTime, Throwable error);
+
+    /**
+     * Flush and close the sink
+     */
+    default void close() {
+    }
+}
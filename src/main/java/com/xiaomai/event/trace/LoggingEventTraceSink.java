@@ -0,0 +1,125 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.trace;
+
+import com.xiaomai.event.constant.EventBuiltinAttr;
+import com.xiaomai.event.utils.StructuredArguments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * The sink writing the event traces to the logs as the lifecycle and the handler methods used
+ * to, the loggers are kept for the existing log configurations
+ */
+public class LoggingEventTraceSink implements EventTraceSink {
+
+    private static final Logger LIFECYCLE_LOG = LoggerFactory.getLogger("com.xiaomai.event.lifecycle.DefaultEventLifecycle");
+
+    private static final Logger HANDLER_LOG = LoggerFactory.getLogger("com.xiaomai.event.config.adapter.EventHandlerMethod");
+
+    private static final ThreadLocal<DateFormat> FMT_THREAD_LOCAL =
+        ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+
+    @Override
+    public void record(EventTracePhase phase, String eventSeq, String eventKey, Class<?> payloadClass, String actor,
+                       String producer, long triggerTime, long startTime, long endTime, Throwable error) {
+        switch (phase) {
+            case PENDING:
+                if (LIFECYCLE_LOG.isInfoEnabled()) {
+                    LIFECYCLE_LOG.info("Mark event {}, {}, {} pending",
+                        StructuredArguments.keyValue("eventId", eventSeq),
+                        StructuredArguments.keyValue("producerKey", actor),
+                        StructuredArguments.keyValue("eventPayloadClass", payloadClass.getName()));
+                }
+                break;
+            case EXECUTING:
+            case COMMITTED:
+                if (LIFECYCLE_LOG.isInfoEnabled()) {
+                    LIFECYCLE_LOG.info("Mark event {}, {}, {} {}",
+                        StructuredArguments.keyValue("eventId", eventSeq),
+                        StructuredArguments.keyValue("consumerKey", actor),
+                        StructuredArguments.keyValue("eventPayloadClass", payloadClass.getName()),
+                        phase == EventTracePhase.EXECUTING ? "executing" : "committed");
+                }
+                break;
+            case FAILED:
+                if (LIFECYCLE_LOG.isInfoEnabled()) {
+                    LIFECYCLE_LOG.info("Mark event {}, {}, {} failed, {}",
+                        StructuredArguments.keyValue("eventId", eventSeq),
+                        StructuredArguments.keyValue("consumerKey", actor),
+                        StructuredArguments.keyValue("eventPayloadClass", payloadClass.getName()),
+                        StructuredArguments.keyValue("reason", null == error ? null : error.getMessage()));
+                }
+                break;
+            case RECEIVED:
+                if (HANDLER_LOG.isInfoEnabled()) {
+                    HANDLER_LOG.info("Received event {}, {}, {}, {}, {}, {}, invoking {} ...",
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_KEY.getKey(), eventKey),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_CLASS.getKey(), payloadClass.getName()),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(), formatTime(triggerTime)),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), producer),
+                        StructuredArguments.keyValue("lagTime", formatDuration(triggerTime, startTime)),
+                        StructuredArguments.keyValue("method", actor));
+                }
+                break;
+            case DUPLICATE:
+                if (HANDLER_LOG.isInfoEnabled()) {
+                    HANDLER_LOG.info("Skipped duplicate event {}, {}, {}, {}",
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_KEY.getKey(), eventKey),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_CLASS.getKey(), payloadClass.getName()),
+                        StructuredArguments.keyValue("method", actor));
+                }
+                break;
+            case HANDLED:
+                if (HANDLER_LOG.isInfoEnabled()) {
+                    HANDLER_LOG.info("Event handling succeeded! {}, {}, {}, {}, {}, {}",
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_KEY.getKey(), eventKey),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_CLASS.getKey(), payloadClass.getName()),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(), formatTime(triggerTime)),
+                        StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), producer),
+                        StructuredArguments.keyValue("executeTime", formatDuration(startTime, endTime)));
+                }
+                break;
+            case HANDLE_FAILED:
+                HANDLER_LOG.error("Event handling failed! {}, {}, {}, {}, {}",
+                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_ID.getKey(), eventSeq),
+                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_KEY.getKey(), eventKey),
+                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_CLASS.getKey(), payloadClass.getName()),
+                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_TIME.getKey(), formatTime(triggerTime)),
+                    StructuredArguments.keyValue(EventBuiltinAttr.EVENT_TRIGGER_APP.getKey(), producer), error);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String formatTime(long time) {
+        return FMT_THREAD_LOCAL.get().format(new Date(time));
+    }
+
+    private static String formatDuration(long start, long end) {
+        long msDiff = end - start;
+        return msDiff < 1000 ? (msDiff + "ms") : ((msDiff / 1000.0) + "s");
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.trace;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The sink recording the event traces into a lock-free ring buffer, which are written to the
+ * delegate sink by a background writer, so the consumer thread only copies the fields into a
+ * preallocated slot. The traces are dropped rather than blocking the consumer if the buffer is
+ * full, and the dropped count is logged by the writer. The idle writer spins briefly and then
+ * parks until a producer publishes a trace, so an idle sink costs no wakeups.
+ */
+@Slf4j
+public class RingBufferEventTraceSink implements EventTraceSink {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The yields of the idle writer before it parks
+     */
+    private static final int IDLE_SPINS = 64;
+
+    private static final long CLOSE_TIMEOUT_MS = 10_000L;
+
+    private final EventTraceSink delegate;
+
+    private final Slot[] slots;
+
+    private final int mask;
+
+    /**
+     * The next sequence to claim by the producers
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * The next sequence to write by the writer
+     */
+    private volatile long written;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writer;
+
+    /**
+     * Whether the writer is parked or about to, checked by the producers after publishing
+     */
+    private volatile boolean writerParked;
+
+    private volatile boolean closed;
+
+    /**
+     * Construct the sink and start the writer
+     * @param delegate the sink the traces are written to
+     * @param capacity the capacity of the ring buffer, rounded up to the power of 2
+     */
+    public RingBufferEventTraceSink(EventTraceSink delegate, int capacity) {
+        Assert.notNull(delegate, "the delegate sink cannot be null");
+        Assert.isTrue(capacity > 0 && capacity <= (1 << 30), "the capacity must be in (0, 2^30]");
+        int size = Integer.highestOneBit(capacity);
+        size = size < capacity ? size << 1 : size;
+        this.delegate = delegate;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.writer = new Thread(this::write, "scs-event-trace-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void record(EventTracePhase phase, String eventSeq, String eventKey, Class<?> payloadClass, String actor,
+                       String producer, long triggerTime, long startTime, long endTime, Throwable error) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (closed || sequence - written >= slots.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.phase = phase;
+        slot.eventSeq = eventSeq;
+        slot.eventKey = eventKey;
+        slot.payloadClass = payloadClass;
+        slot.actor = actor;
+        slot.producer = producer;
+        slot.triggerTime = triggerTime;
+        slot.startTime = startTime;
+        slot.endTime = endTime;
+        slot.error = error;
+        // publish the fields to the writer
+        slot.sequence = sequence;
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Get the count of the traces dropped as the buffer is full
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void write() {
+        long reportedDropped = 0;
+        int idleSpins = 0;
+        while (!closed || written < claimed.get()) {
+            Slot slot = slots[(int) (written & mask)];
+            if (slot.sequence != written) {
+                if (closed && written < claimed.get() && !isClaimAlive()) {
+                    break;
+                }
+                long droppedCount = dropped.get();
+                if (droppedCount != reportedDropped) {
+                    log.warn("{} event traces are dropped as the trace buffer is full", droppedCount - reportedDropped);
+                    reportedDropped = droppedCount;
+                }
+                if (idleSpins < IDLE_SPINS) {
+                    idleSpins++;
+                    Thread.yield();
+                    continue;
+                }
+                // recheck after the flag, either the producer sees the flag or the writer sees the slot
+                writerParked = true;
+                if (slot.sequence != written && !closed) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+                continue;
+            }
+            idleSpins = 0;
+            try {
+                delegate.record(slot.phase, slot.eventSeq, slot.eventKey, slot.payloadClass, slot.actor, slot.producer,
+                    slot.triggerTime, slot.startTime, slot.endTime, slot.error);
+            } catch (Throwable t) {
+                log.error("Failed to write the event trace {}", slot.eventSeq, t);
+            }
+            slot.clear();
+            written++;
+        }
+    }
+
+    /**
+     * Whether the producers that claimed the slots may still publish them, only checked on close
+     */
+    private boolean isClaimAlive() {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+        return slots[(int) (written & mask)].sequence == written;
+    }
+
+    /**
+     * Stop accepting the traces, and wait for the writer to flush the buffered ones
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    private static final class Slot {
+
+        private volatile long sequence = -1;
+
+        private EventTracePhase phase;
+
+        private String eventSeq;
+
+        private String eventKey;
+
+        private Class<?> payloadClass;
+
+        private String actor;
+
+        private String producer;
+
+        private long triggerTime;
+
+        private long startTime;
+
+        private long endTime;
+
+        private Throwable error;
+
+        private void clear() {
+            eventSeq = null;
+            eventKey = null;
+            payloadClass = null;
+            actor = null;
+            producer = null;
+            error = null;
+        }
+    }
+}
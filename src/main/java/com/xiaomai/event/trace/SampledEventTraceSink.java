@@ -0,0 +1,96 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.trace;
+
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The sink sampling the event traces per event class before the delegate sink. The sampling is
+ * decided by the event id, so all the phases of a sampled event are traced, and the failures
+ * are always traced.
+ */
+public class SampledEventTraceSink implements EventTraceSink {
+
+    private static final int SCALE = 10_000;
+
+    private final EventTraceSink delegate;
+
+    private final int defaultThreshold;
+
+    private final Map<String, Double> classRates;
+
+    /**
+     * The threshold of each event class, out of {@link #SCALE}
+     */
+    private final Map<Class<?>, Integer> thresholds = new ConcurrentHashMap<>();
+
+    /**
+     * Construct the sink
+     * @param delegate the sink the sampled traces are recorded to
+     * @param defaultRate the sample rate in [0, 1] of the event classes not configured
+     * @param classRates the sample rates keyed by the event class name
+     */
+    public SampledEventTraceSink(EventTraceSink delegate, double defaultRate, Map<String, Double> classRates) {
+        Assert.notNull(delegate, "the delegate sink cannot be null");
+        this.delegate = delegate;
+        this.defaultThreshold = toThreshold(defaultRate);
+        this.classRates = null == classRates ? Collections.emptyMap() : new HashMap<>(classRates);
+        this.classRates.values().forEach(SampledEventTraceSink::toThreshold);
+    }
+
+    @Override
+    public void record(EventTracePhase phase, String eventSeq, String eventKey, Class<?> payloadClass, String actor,
+                       String producer, long triggerTime, long startTime, long endTime, Throwable error) {
+        if (null == error && !isSampled(eventSeq, payloadClass)) {
+            return;
+        }
+        delegate.record(phase, eventSeq, eventKey, payloadClass, actor, producer, triggerTime, startTime, endTime, error);
+    }
+
+    private boolean isSampled(String eventSeq, Class<?> payloadClass) {
+        Integer threshold = null == payloadClass ? defaultThreshold : thresholds.get(payloadClass);
+        if (null == threshold) {
+            Double rate = classRates.get(payloadClass.getName());
+            threshold = null == rate ? defaultThreshold : toThreshold(rate);
+            thresholds.put(payloadClass, threshold);
+        }
+        if (threshold >= SCALE) {
+            return true;
+        }
+        if (threshold <= 0 || null == eventSeq) {
+            return false;
+        }
+        // spread the hash of the event id, the ids often differ in the tail only
+        int hash = eventSeq.hashCode() * 0x9E3779B9;
+        return ((hash >>> 1) % SCALE) < threshold;
+    }
+
+    private static int toThreshold(double rate) {
+        Assert.isTrue(rate >= 0 && rate <= 1, "the sample rate must be in [0, 1]: " + rate);
+        return (int) Math.round(rate * SCALE);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -101,6 +101,10 @@ public abstract class EventBindingUtils {
 
         Arrays.stream(eventHandlers).forEach(EventBindingUtils::cacheEventHandler);
 
+        // precompute the policies of the registered event classes
+        eventProducerConfMap.keySet().forEach(EventClassDescriptor::register);
+        eventConsumerConfMap.keySet().forEach(EventClassDescriptor::register);
+
         eventProducerConfMap.forEach((eventPayloadClass, eventProducer)
             -> registerOutputBindingTargetBeanDefinition(eventPayloadClass, eventProducer, registry, parentClass));
 
@@ -251,29 +255,40 @@ public abstract class EventBindingUtils {
     }
 
     private static String resolveEventBeanName(Class<?> eventPayloadClass) {
-        EventMeta eventMeta = eventPayloadClass.getAnnotation(EventMeta.class);
-        Assert.state(null != eventMeta, "EventMeta annotation not marked on class " + eventPayloadClass.getName());
+        EventClassDescriptor descriptor = EventClassDescriptor.of(eventPayloadClass);
+        Assert.state(null != descriptor.getEventMeta(), "EventMeta annotation not marked on class " + eventPayloadClass.getName());
+        return descriptor.getInputBindingName();
+    }
 
+    /**
+     * Compose the event name of the event meta
+     * @param eventMeta the event meta
+     * @return the event name with the domain
+     */
+    static String composeEventName(EventMeta eventMeta) {
         if (StringUtils.hasText(eventMeta.domain()))
             return eventMeta.domain() + DOMAIN_DELIM + eventMeta.name();
         return eventMeta.name();
     }
 
+    /**
+     * Compose the output binding name of the event
+     * @param eventName the event name with the domain
+     * @return the output binding name
+     */
+    static String composeOutputBindingName(String eventName) {
+        return OUTPUT_MAGIC + eventName;
+    }
+
     /**
      * Resolve the output binding name for given event
      * @param eventPayloadClass the event payload class
      * @return the resolved output binding name
      */
     public static String resolveOutputBindingName(Class<?> eventPayloadClass) {
-        EventMeta eventMeta = eventPayloadClass.getAnnotation(EventMeta.class);
-        Assert.state(null != eventMeta, "EventMeta annotation not marked on class " + eventPayloadClass.getName());
-
-        String bindingName = eventMeta.name();
-        if (StringUtils.hasText(eventMeta.domain())) {
-            bindingName = eventMeta.domain() + DOMAIN_DELIM + bindingName;
-        }
-
-        return OUTPUT_MAGIC + bindingName;
+        EventClassDescriptor descriptor = EventClassDescriptor.of(eventPayloadClass);
+        Assert.state(null != descriptor.getEventMeta(), "EventMeta annotation not marked on class " + eventPayloadClass.getName());
+        return descriptor.getOutputBindingName();
     }
 
     /**
@@ -282,7 +297,7 @@ public abstract class EventBindingUtils {
      * @return the cached event meta
      */
     public static EventMeta resolveEventMeta(Class<?> eventPayloadClass) {
-        EventMeta eventMeta = eventPayloadClass.getAnnotation(EventMeta.class);
+        EventMeta eventMeta = EventClassDescriptor.of(eventPayloadClass).getEventMeta();
         Assert.state(null != eventMeta, "EventMeta annotation not marked on class " + eventPayloadClass.getName());
         return eventMeta;
     }
@@ -379,4 +394,8 @@ public abstract class EventBindingUtils {
     public static Map<Class<?>, EventProducer> getEventProducerConfMap() {
         return eventProducerConfMap;
     }
+
+    public static Map<Class<?>, EventHandler> getEventConsumerConfMap() {
+        return eventConsumerConfMap;
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.utils;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cache of the event payload classes resolved from the {@code scs.EventClass} header, keyed
+ * by the class loader and the raw header value, so neither the class loader lookup nor the
+ * decoding of the header bytes is repeated. The class loaders are weakly referenced, and the
+ * classes of each class loader are bounded.
+ */
+public final class EventClassCache {
+
+    /**
+     * The max count of the cached classes of each class loader, the other classes are resolved
+     * without cache
+     */
+    private static final int MAX_CLASSES_PER_LOADER = 1024;
+
+    /**
+     * The classes are weakly referenced as well, for they refer to their class loaders
+     */
+    private static final Map<ClassLoader, Map<Object, WeakReference<Class<?>>>> CLASSES =
+        new ConcurrentReferenceHashMap<>(16, ConcurrentReferenceHashMap.ReferenceType.WEAK);
+
+    private EventClassCache() {
+    }
+
+    /**
+     * Resolve the class of the header value with the default class loader
+     * @param headerValue the class name, in a {@code String} or the UTF-8 {@code byte[]}
+     * @return the class
+     * @throws IllegalArgumentException if the header is absent or the class cannot be resolved
+     */
+    public static Class<?> resolve(Object headerValue) {
+        if (null == headerValue) {
+            throw new IllegalArgumentException("Event class header is absent");
+        }
+        ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+        if (null == classLoader) {
+            classLoader = EventClassCache.class.getClassLoader();
+        }
+        Map<Object, WeakReference<Class<?>>> classes = CLASSES.computeIfAbsent(classLoader, cl -> new ConcurrentHashMap<>());
+        // the byte buffer compares the content, so the bytes are not decoded on the cache hit
+        Object key = headerValue instanceof byte[] ? ByteBuffer.wrap((byte[]) headerValue) : headerValue;
+        WeakReference<Class<?>> cached = classes.get(key);
+        Class<?> clazz = null != cached ? cached.get() : null;
+        if (null != clazz) {
+            return clazz;
+        }
+        String className = headerValue instanceof byte[]
+            ? new String((byte[]) headerValue, StandardCharsets.UTF_8) : String.valueOf(headerValue);
+        clazz = ClassUtils.resolveClassName(className, classLoader);
+        if (classes.size() < MAX_CLASSES_PER_LOADER) {
+            // copy the bytes in case the header array is reused
+            classes.put(headerValue instanceof byte[] ? ByteBuffer.wrap(((byte[]) headerValue).clone()) : key,
+                new WeakReference<>(clazz));
+        }
+        return clazz;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.xiaomai.event.utils;
+
+import com.xiaomai.event.annotation.EventMeta;
+import com.xiaomai.event.partition.PayloadKeyExtractor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The precomputed policy of an event payload class, i.e. the {@link EventMeta}, the audit flag,
+ * the consumer whitelist, the binding names and the partition key extractor, so the hot paths
+ * neither reflect on the class nor build the collections per event. The descriptors of the
+ * classes registered in {@link EventBindingUtils} are built at startup, the others on the first
+ * use.
+ */
+public final class EventClassDescriptor {
+
+    private static final Map<Class<?>, EventClassDescriptor> DESCRIPTORS = new ConcurrentHashMap<>();
+
+    private final Class<?> payloadClass;
+
+    private final EventMeta eventMeta;
+
+    private final boolean audited;
+
+    /**
+     * The consumer whitelist, empty if the event is not dedicated
+     */
+    private final Set<String> consumerWhitelist;
+
+    private final String inputBindingName;
+
+    private final String outputBindingName;
+
+    private final String eventName;
+
+    private volatile PayloadKeyExtractor keyExtractor;
+
+    private EventClassDescriptor(Class<?> payloadClass) {
+        this.payloadClass = payloadClass;
+        this.eventMeta = payloadClass.getDeclaredAnnotation(EventMeta.class);
+        this.audited = null != eventMeta && eventMeta.enableAudit();
+        this.consumerWhitelist = null == eventMeta || eventMeta.consumerWhitelist().length == 0 ? Collections.emptySet()
+            : Collections.unmodifiableSet(new HashSet<>(Arrays.asList(eventMeta.consumerWhitelist())));
+        this.inputBindingName = null == eventMeta ? null : EventBindingUtils.composeEventName(eventMeta);
+        this.outputBindingName = null == eventMeta ? null : EventBindingUtils.composeOutputBindingName(inputBindingName);
+        this.eventName = null == eventMeta ? payloadClass.getName() : inputBindingName;
+    }
+
+    /**
+     * Get the descriptor of the event payload class, built on the first use if not registered
+     * @param payloadClass the event payload class
+     * @return the descriptor
+     */
+    public static EventClassDescriptor of(Class<?> payloadClass) {
+        EventClassDescriptor descriptor = DESCRIPTORS.get(payloadClass);
+        return null != descriptor ? descriptor : DESCRIPTORS.computeIfAbsent(payloadClass, EventClassDescriptor::new);
+    }
+
+    /**
+     * Register the descriptor of the event payload class
+     * @param payloadClass the event payload class
+     */
+    public static void register(Class<?> payloadClass) {
+        of(payloadClass);
+    }
+
+    public Class<?> getPayloadClass() {
+        return payloadClass;
+    }
+
+    /**
+     * Get the event meta
+     * @return the event meta, null if the class is not marked
+     */
+    public EventMeta getEventMeta() {
+        return eventMeta;
+    }
+
+    public boolean isAudited() {
+        return audited;
+    }
+
+    /**
+     * Check whether the consumer is allowed by the consumer whitelist
+     * @param consumerKey the consumer key
+     * @return whether allowed, always if the event is not dedicated
+     */
+    public boolean isConsumerAllowed(String consumerKey) {
+        return consumerWhitelist.isEmpty() || consumerWhitelist.contains(consumerKey);
+    }
+
+    public Set<String> getConsumerWhitelist() {
+        return consumerWhitelist;
+    }
+
+    /**
+     * Get the input binding name, which is the event name as well
+     * @return the input binding name, null if the class is not marked
+     */
+    public String getInputBindingName() {
+        return inputBindingName;
+    }
+
+    /**
+     * Get the output binding name
+     * @return the output binding name, null if the class is not marked
+     */
+    public String getOutputBindingName() {
+        return outputBindingName;
+    }
+
+    /**
+     * Get the event name to tag the metrics and the logs
+     * @return the event name, the class name if the class is not marked
+     */
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * Get the partition key extractor of {@link EventMeta#partitionOn()}, compiled on the first use
+     * @return the key extractor, null if the partition fields are not declared
+     */
+    public PayloadKeyExtractor getKeyExtractor() {
+        if (null == eventMeta || eventMeta.partitionOn().length == 0) {
+            return null;
+        }
+        PayloadKeyExtractor extractor = keyExtractor;
+        if (null == extractor) {
+            synchronized (this) {
+                extractor = keyExtractor;
+                if (null == extractor) {
+                    extractor = PayloadKeyExtractor.compile(payloadClass, eventMeta.partitionOn());
+                    keyExtractor = extractor;
+                }
+            }
+        }
+        return extractor;
+    }
+}
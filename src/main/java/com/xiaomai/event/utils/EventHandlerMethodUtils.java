@@ -26,10 +26,14 @@ import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 /**
  * This class contains utility methods for handling {@link EventHandler} annotated bean
@@ -39,6 +43,32 @@ import java.lang.reflect.Method;
  */
 public class EventHandlerMethodUtils {
 
+	/**
+	 * The reactive streams publisher class, null if not in the classpath
+	 */
+	private static final Class<?> PUBLISHER_CLASS = ClassUtils.isPresent("org.reactivestreams.Publisher",
+			EventHandlerMethodUtils.class.getClassLoader()) ? ClassUtils.resolveClassName("org.reactivestreams.Publisher",
+			EventHandlerMethodUtils.class.getClassLoader()) : null;
+
+	/**
+	 * Check whether the handler method with the return type completes asynchronously
+	 * @param returnType the return type of the handler method
+	 * @return true if returns a {@code CompletionStage} or a reactive streams {@code Publisher}
+	 */
+	public static boolean isAsyncReturnType(Class<?> returnType) {
+		return CompletionStage.class.isAssignableFrom(returnType)
+				|| (null != PUBLISHER_CLASS && PUBLISHER_CLASS.isAssignableFrom(returnType));
+	}
+
+	/**
+	 * Check whether the result is a reactive streams publisher
+	 * @param result the result of the handler method
+	 * @return true if the result is a {@code Publisher}
+	 */
+	public static boolean isPublisher(Object result) {
+		return null != PUBLISHER_CLASS && PUBLISHER_CLASS.isInstance(result);
+	}
+
 	public static int inputAnnotationCount(Method method) {
 		int inputAnnotationCount = 0;
 		for (int parameterIndex = 0; parameterIndex < method.getParameterTypes().length; parameterIndex++) {
@@ -141,6 +171,20 @@ public class EventHandlerMethodUtils {
 		}
 	}
 
+	/**
+	 * Validate the batch event handler method, which consumes a {@code List} of the events
+	 * and returns nothing
+	 * @param method the batch event handler method
+	 */
+	public static void validateBatchEventHandlerMethod(Method method) {
+		Assert.isTrue(method.getParameterCount() == 1
+						&& Collection.class.isAssignableFrom(method.getParameterTypes()[0])
+						&& method.getParameterTypes()[0].isAssignableFrom(List.class),
+				"A batch @EventHandler method must have a single List parameter: " + method);
+		Assert.isTrue(Void.TYPE.equals(method.getReturnType()),
+				"A batch @EventHandler method cannot return a value: " + method);
+	}
+
 	public static String getOutboundBindingTargetName(Method method) {
 		SendTo sendTo = AnnotationUtils.findAnnotation(method, SendTo.class);
 		if (sendTo != null) {
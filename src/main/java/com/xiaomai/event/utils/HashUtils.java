@@ -0,0 +1,42 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.utils;
+
+/**
+ * The hashing shared by the partition selection, the hot key detection and the dedup store
+ */
+public final class HashUtils {
+
+    private HashUtils() {
+    }
+
+    /**
+     * The finalization mix of MurmurHash3, spreading the bits of the hash over 64 bits, e.g. of a
+     * 32-bit {@code hashCode()} widened to long
+     * @param h the hash
+     * @return the mixed hash
+     */
+    public static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -18,12 +18,21 @@
 package com.xiaomai.event.utils;
 
 import com.google.common.collect.Maps;
+import com.xiaomai.event.metrics.EventMetrics;
+import com.xiaomai.event.partition.EventPartitionHandler;
+import com.xiaomai.event.partition.PartitionRoute;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author baihe Created on 2020/5/29 7:52 PM
  */
+@Slf4j
 public class PartitionRouteUtil {
 
     /**
@@ -32,9 +41,28 @@ public class PartitionRouteUtil {
     private static Map<String, Integer> destinationPartitionCountMap = Maps.newConcurrentMap();
 
     /**
-     * The partition delimiter to extract the destination from the partition key
+     * The metrics of the partition counts
      */
-    private static final String PARTITION_KEY_DELIM = "::";
+    private static volatile EventMetrics eventMetrics = EventMetrics.NOOP;
+
+    /**
+     * The partition handlers of each destination, notified when the partition count changes
+     */
+    private static final Map<String, Set<EventPartitionHandler>> destinationPartitionHandlers = Maps.newConcurrentMap();
+
+    /**
+     * The count of the partition count changes applied
+     */
+    private static final AtomicLong partitionCountChanges = new AtomicLong();
+
+    /**
+     * Set the metrics of the partition counts, the known partition counts are recorded at once
+     * @param metrics the event metrics
+     */
+    public static void setEventMetrics(EventMetrics metrics) {
+        eventMetrics = metrics;
+        destinationPartitionCountMap.forEach(metrics::recordPartitionCount);
+    }
 
     /**
      * compose the *FULL* partition key with the event payload, channel, and payload key
@@ -43,9 +71,19 @@ public class PartitionRouteUtil {
      * @param payloadKey the raw partition key extracted from the payload
      * @return the composed partition key
      */
-    public static Object composePartitionKey(Object payload, String channel, Object payloadKey) {
+    public static PartitionRoute composePartitionKey(Object payload, String channel, Object payloadKey) {
         String destination = EventBindingUtils.resolveDestination(payload.getClass(), channel);
-        return destination + PARTITION_KEY_DELIM + payloadKey;
+        return composePartitionKey(destination, payloadKey);
+    }
+
+    /**
+     * compose the *FULL* partition key with the resolved destination and payload key
+     * @param destination the destination of the event binding
+     * @param payloadKey the raw partition key extracted from the payload
+     * @return the composed partition key
+     */
+    public static PartitionRoute composePartitionKey(String destination, Object payloadKey) {
+        return PartitionRoute.of(destination, payloadKey);
     }
 
     /**
@@ -54,7 +92,12 @@ public class PartitionRouteUtil {
      * @return the extracted destination
      */
     public static String extractDestination(Object partitionKey) {
-        return String.valueOf(partitionKey).split(PARTITION_KEY_DELIM)[0];
+        if (partitionKey instanceof PartitionRoute) {
+            return ((PartitionRoute) partitionKey).getDestination();
+        }
+        String wireForm = String.valueOf(partitionKey);
+        int index = wireForm.indexOf(PartitionRoute.WIRE_DELIM);
+        return index < 0 ? wireForm : wireForm.substring(0, index);
     }
 
     /**
@@ -68,12 +111,51 @@ public class PartitionRouteUtil {
     }
 
     /**
-     * Update the partition count of the specified destination
+     * Update the partition count of the specified destination, the partition handlers of the
+     * destination are notified if changed
      * @param destination the destination
      * @param partCount the partition count
      */
-    public static void updateDestinationPartitionCount(String destination, int partCount) {
-        destinationPartitionCountMap.putIfAbsent(destination, partCount);
+    public static synchronized void updateDestinationPartitionCount(String destination, int partCount) {
+        if (partCount <= 0) {
+            return;
+        }
+        Integer previous = destinationPartitionCountMap.put(destination, partCount);
+        if (null != previous && previous != partCount) {
+            partitionCountChanges.incrementAndGet();
+            log.info("partition count of {} changed from {} to {}", destination, previous, partCount);
+        }
+        if (null == previous || previous != partCount) {
+            Set<EventPartitionHandler> handlers = destinationPartitionHandlers.get(destination);
+            if (null != handlers) {
+                handlers.forEach(handler -> handler.setPartitionCount(partCount));
+            }
+        }
+        eventMetrics.recordPartitionCount(destination, partCount);
+    }
+
+    /**
+     * Register the partition handler of the destination to be notified of the partition count,
+     * the known partition count is applied at once. The handlers are weakly referenced, so the
+     * handlers of the rebound channels are released.
+     * @param destination the destination
+     * @param partitionHandler the partition handler
+     */
+    public static synchronized void registerPartitionHandler(String destination, EventPartitionHandler partitionHandler) {
+        destinationPartitionHandlers.computeIfAbsent(destination,
+            d -> Collections.newSetFromMap(new WeakHashMap<>())).add(partitionHandler);
+        Integer partCount = destinationPartitionCountMap.get(destination);
+        if (null != partCount) {
+            partitionHandler.setPartitionCount(partCount);
+        }
+    }
+
+    /**
+     * Get the count of the partition count changes applied since startup
+     * @return the change count
+     */
+    public static long getPartitionCountChanges() {
+        return partitionCountChanges.get();
     }
 
 
@@ -0,0 +1,206 @@
+/*
+ * This file is part of scs-event.
+ *
+ * scs-event is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * scs-event is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with scs-event.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xiaomai.event.partition.kafka;
+
+import com.xiaomai.event.annotation.EventMeta;
+import com.xiaomai.event.annotation.EventProducer;
+import com.xiaomai.event.config.EventBindingServiceProperties;
+import com.xiaomai.event.utils.EventBindingUtils;
+import com.xiaomai.event.utils.PartitionRouteUtil;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.DescribeTopicsResult;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.internals.KafkaFutureImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.stream.config.BinderProperties;
+import org.springframework.core.annotation.AnnotationUtils;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KafkaTopicPartitionRefreshJobTest {
+
+    private static final String BINDER = "refresh-test-kafka";
+
+    private final Node node = new Node(0, "localhost", 9092);
+
+    private final List<AdminClient> adminClients = new ArrayList<>();
+
+    private final AtomicInteger createdClients = new AtomicInteger();
+
+    private KafkaTopicPartitionRefreshJob refreshJob;
+
+    private String orderDestination;
+
+    private String paymentDestination;
+
+    @BeforeEach
+    void setUp() {
+        registerProducer(OrderCreated.class);
+        registerProducer(PaymentCreated.class);
+        orderDestination = EventBindingUtils.resolveDestination(OrderCreated.class, null);
+        paymentDestination = EventBindingUtils.resolveDestination(PaymentCreated.class, null);
+
+        BinderProperties binderProperties = new BinderProperties();
+        binderProperties.setType("kafka");
+        EventBindingServiceProperties bindingServiceProperties = new EventBindingServiceProperties();
+        bindingServiceProperties.setBinders(Collections.singletonMap(BINDER, binderProperties));
+        refreshJob = new KafkaTopicPartitionRefreshJob(bindingServiceProperties, 0, b -> {
+            createdClients.incrementAndGet();
+            return adminClients.remove(0);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshJob.destroy();
+        EventBindingUtils.getEventProducerConfMap().remove(OrderCreated.class);
+        EventBindingUtils.getEventProducerConfMap().remove(PaymentCreated.class);
+    }
+
+    @Test
+    void describesTheTopicsOfABinderInOneRequest() {
+        AdminClient adminClient = mockAdminClient();
+        describe(adminClient, described(orderDestination, 3), described(paymentDestination, 6));
+
+        refreshJob.refreshTopicPartitions();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> topics = ArgumentCaptor.forClass(Collection.class);
+        verify(adminClient, times(1)).describeTopics(topics.capture());
+        assertEquals(2, topics.getValue().size());
+        assertTrue(topics.getValue().containsAll(Arrays.asList(orderDestination, paymentDestination)));
+        assertEquals(3, PartitionRouteUtil.getPartitionCount(orderDestination).intValue());
+        assertEquals(6, PartitionRouteUtil.getPartitionCount(paymentDestination).intValue());
+    }
+
+    @Test
+    void keepsTheLastKnownCountOfAFailedTopic() {
+        AdminClient adminClient = mockAdminClient();
+        describe(adminClient, described(orderDestination, 4), described(paymentDestination, 2));
+        refreshJob.refreshTopicPartitions();
+
+        describe(adminClient, failed(orderDestination), described(paymentDestination, 5));
+        refreshJob.refreshTopicPartitions();
+
+        assertEquals(4, PartitionRouteUtil.getPartitionCount(orderDestination).intValue());
+        assertEquals(5, PartitionRouteUtil.getPartitionCount(paymentDestination).intValue());
+        // a partial failure neither backs off nor recreates the client
+        assertEquals(1, createdClients.get());
+        verify(adminClient, never()).close();
+    }
+
+    @Test
+    void backsOffAndRecreatesTheClientAfterTheBinderFails() throws InterruptedException {
+        AdminClient failingClient = mockAdminClient();
+        describe(failingClient, failed(orderDestination), failed(paymentDestination));
+        AdminClient recoveredClient = mockAdminClient();
+        describe(recoveredClient, described(orderDestination, 8), described(paymentDestination, 8));
+
+        refreshJob.refreshTopicPartitions();
+        verify(failingClient).close();
+
+        // backed off, the binder is not described again until the back off elapses
+        refreshJob.refreshTopicPartitions();
+        verify(failingClient, times(1)).describeTopics(anyCollection());
+        assertEquals(1, createdClients.get());
+
+        // the first back off is 2 seconds
+        Thread.sleep(2_100L);
+        refreshJob.refreshTopicPartitions();
+        assertEquals(2, createdClients.get());
+        assertEquals(8, PartitionRouteUtil.getPartitionCount(orderDestination).intValue());
+
+        // recovered, the back off is cleared and the client is kept
+        refreshJob.refreshTopicPartitions();
+        verify(recoveredClient, times(2)).describeTopics(anyCollection());
+        assertEquals(2, createdClients.get());
+    }
+
+    private AdminClient mockAdminClient() {
+        AdminClient adminClient = mock(AdminClient.class);
+        adminClients.add(adminClient);
+        return adminClient;
+    }
+
+    @SafeVarargs
+    private final void describe(AdminClient adminClient, Map.Entry<String, KafkaFuture<TopicDescription>>... results) {
+        Map<String, KafkaFuture<TopicDescription>> futures = new HashMap<>();
+        for (Map.Entry<String, KafkaFuture<TopicDescription>> result : results) {
+            futures.put(result.getKey(), result.getValue());
+        }
+        DescribeTopicsResult describeTopicsResult = mock(DescribeTopicsResult.class);
+        when(describeTopicsResult.values()).thenReturn(futures);
+        when(adminClient.describeTopics(anyCollection())).thenReturn(describeTopicsResult);
+    }
+
+    private Map.Entry<String, KafkaFuture<TopicDescription>> described(String topic, int partitions) {
+        List<TopicPartitionInfo> partitionInfos = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            partitionInfos.add(new TopicPartitionInfo(i, node, Collections.singletonList(node),
+                Collections.singletonList(node)));
+        }
+        return new AbstractMap.SimpleEntry<>(topic,
+            KafkaFuture.completedFuture(new TopicDescription(topic, false, partitionInfos)));
+    }
+
+    private static Map.Entry<String, KafkaFuture<TopicDescription>> failed(String topic) {
+        KafkaFutureImpl<TopicDescription> future = new KafkaFutureImpl<>();
+        future.completeExceptionally(new UnknownTopicOrPartitionException(topic));
+        return new AbstractMap.SimpleEntry<>(topic, future);
+    }
+
+    private static void registerProducer(Class<?> eventClass) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("event", eventClass);
+        attributes.put("binder", BINDER);
+        EventBindingUtils.getEventProducerConfMap().put(eventClass,
+            AnnotationUtils.synthesizeAnnotation(attributes, EventProducer.class, null));
+    }
+
+    @EventMeta(name = "refresh_order_created", description = "the order created", domain = "refresh_test")
+    static class OrderCreated {
+    }
+
+    @EventMeta(name = "refresh_payment_created", description = "the payment created", domain = "refresh_test")
+    static class PaymentCreated {
+    }
+}